@@ -0,0 +1,56 @@
+package net.galmiza.android.engine.sound;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Times the fixed-point analyzer against the float analyzer on the device, results are logged (tag SpectrumAnalyzerBenchmark)
+ * Run with the instrumented tests, it checks nothing
+ */
+public class SpectrumAnalyzerBenchmark extends TestCase {
+
+    private static final String TAG = "SpectrumAnalyzerBenchmark";
+    private static final int[] SIZES = {4096, 8192, 16384};
+    private static final int FRAMES = 200;
+
+    public void testFixedPointAgainstFloat() {
+        Transform engine;
+        try {
+            engine = new SoundEngine();
+        } catch (LinkageError e) {
+            engine = null;
+        }
+        for (int n : SIZES) {
+            short[] frame = noisyTones(n);
+            SpectrumAnalyzer fixed = new SpectrumAnalyzer(n, Window.HANNING);
+            float[] out = new float[fixed.getBinCount()];
+            log(n, "fixed-point", fixed, frame, out);
+            log(n, "float (java)", new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HANNING), frame, out);
+            if (engine != null)
+                log(n, "float (native)", new SpectrumAnalyzer(engine, n, Window.HANNING), frame, out);
+        }
+    }
+
+    private static void log(int n, String name, SpectrumAnalyzer analyzer, short[] frame, float[] out) {
+
+        // Warm up, then time the analysis of the same frame
+        for (int i = 0; i < FRAMES; i++)
+            analyzer.analyze(frame, out, true);
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++)
+            analyzer.analyze(frame, out, true);
+        long time = System.nanoTime() - start;
+        Log.i(TAG, String.format("%d points, %s: %.1f us/frame", n, name, time / 1e3 / FRAMES));
+    }
+
+    private static short[] noisyTones(int n) {
+        Random random = new Random(1);
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (12000 * Math.sin(2 * Math.PI * 0.0731 * i) + 4000 * Math.sin(2 * Math.PI * 0.31 * i) + 1000 * random.nextGaussian());
+        return frame;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Lock-free ring of preallocated blocks between one producer thread and one consumer thread
+ * The producer fills the block returned by @method acquire and publishes it, the consumer reads the block
+ * returned by @method peek and releases it. Blocks are never allocated nor copied.
+ * When the ring is full, the producer does not wait: it reports the lost samples with @method overrun
+ * Each position is only written by one thread, the volatile writes publish the blocks and their lengths
+ */
+public class BlockRing<T> {
+	
+	// Attributes
+	private final T[] blocks;
+	private final int[] lengths;
+	private final int mask;
+	private volatile long head; // blocks published, written by the producer
+	private volatile long tail; // blocks released, written by the consumer
+	private volatile long overruns; // written by the producer
+	private volatile long droppedSamples; // written by the producer
+	
+	/**
+	 * Constructor
+	 * @param blocks are the preallocated blocks, their number must be a power of 2
+	 */
+	public BlockRing(T[] blocks) {
+		if (blocks.length < 1 || (blocks.length & (blocks.length-1)) != 0)
+			throw new IllegalArgumentException("Block count must be a power of 2, got "+blocks.length);
+		this.blocks = blocks;
+		lengths = new int[blocks.length];
+		mask = blocks.length-1;
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getCapacity() {			return blocks.length;	}
+	public int getCount() {				return (int) (head-tail);	}
+	public long getOverruns() {			return overruns;	}
+	public long getDroppedSamples() {	return droppedSamples;	}
+	
+	/**
+	 * Producer side
+	 * @return the block to fill, or null if the ring is full
+	 */
+	public T acquire() {
+		long h = head;
+		if (h-tail == blocks.length) return null;
+		return blocks[(int) h & mask];
+	}
+	
+	/**
+	 * Producer side, hands the acquired block to the consumer
+	 * @param length is the number of valid samples in the block
+	 */
+	public void publish(int length) {
+		long h = head;
+		lengths[(int) h & mask] = length;
+		head = h+1;
+	}
+	
+	/**
+	 * Producer side, counts @param samples that could not be queued because the ring was full
+	 */
+	public void overrun(int samples) {
+		overruns = overruns+1;
+		droppedSamples = droppedSamples+samples;
+	}
+	
+	/**
+	 * Consumer side
+	 * @return the oldest published block, or null if the ring is empty
+	 */
+	public T peek() {
+		long t = tail;
+		if (t == head) return null;
+		return blocks[(int) t & mask];
+	}
+	
+	/**
+	 * Consumer side, number of valid samples in the block returned by @method peek
+	 */
+	public int getLength() {
+		return lengths[(int) tail & mask];
+	}
+	
+	/**
+	 * Consumer side, gives the block returned by @method peek back to the producer
+	 */
+	public void release() {
+		tail = tail+1;
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.Arrays;
+
+/**
+ * Constant-Q transform computed from fft spectra (Brown and Puckette)
+ * Bins are geometrically spaced (binsPerOctave per octave) with a constant frequency to bandwidth ratio
+ * Each bin is the product of the (rectangular windowed) spectrum with a precomputed sparse spectral kernel
+ * Kernels are built once per configuration, use @method get to share them
+ * Magnitudes are scaled like the output of SpectrumAnalyzer (a full scale sine gives 0.5)
+ */
+public class ConstantQ {
+	
+	// Constants
+	private static final float THRESHOLD = 0.0054f; // spectral kernel values below are dropped
+	private static final int CACHE_CAPACITY = 2;
+	
+	// Shared kernels
+	private static final LruMap<String,ConstantQ> cache = new LruMap<>(CACHE_CAPACITY);
+	
+	/**
+	 * Returns the transform for the configuration, builds its kernels if needed
+	 * Building takes long at large fft sizes (over a second at 65536 points), so it should not run on the UI thread
+	 * Kernels are built outside the lock, lookups of other configurations do not wait for them
+	 */
+	public static ConstantQ get(int samplingRate, int n, int binsPerOctave, float minFrequency) {
+		ConstantQ cq = getCached(samplingRate, n, binsPerOctave, minFrequency);
+		if (cq != null) return cq;
+		cq = new ConstantQ(samplingRate, n, binsPerOctave, minFrequency);
+		String key = getKey(samplingRate, n, binsPerOctave, minFrequency);
+		synchronized (cache) {
+			ConstantQ built = cache.get(key); // built meanwhile by another thread
+			if (built != null) return built;
+			cache.put(key, cq);
+			return cq;
+		}
+	}
+	
+	/**
+	 * Returns the transform for the configuration if its kernels were already built, null otherwise
+	 */
+	public static ConstantQ getCached(int samplingRate, int n, int binsPerOctave, float minFrequency) {
+		String key = getKey(samplingRate, n, binsPerOctave, minFrequency);
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+	private static String getKey(int samplingRate, int n, int binsPerOctave, float minFrequency) {
+		return samplingRate+"/"+n+"/"+binsPerOctave+"/"+minFrequency;
+	}
+	
+	// Attributes
+	private final int n;
+	private final int bins;
+	private final float minFrequency;
+	private final float ratio; // frequency ratio between consecutive bins
+	private final int[] rows; // sparse kernel rows (CSR): items of bin k are in [rows[k], rows[k+1][
+	private final int[] columns; // fft bin of each item
+	private final float[] kr, ki; // conjugate of the spectral kernel
+	
+	/**
+	 * Constructor
+	 * @param n is the fft size, it bounds the lowest frequency: the kernel of a bin spans Q.samplingRate/frequency samples
+	 * @param minFrequency is raised if the kernel of the lowest bin would not fit in n samples
+	 */
+	public ConstantQ(int samplingRate, int n, int binsPerOctave, float minFrequency) {
+		this.n = n;
+		ratio = (float) Math.pow(2, 1.0/binsPerOctave);
+		double q = 1/(ratio-1);
+		this.minFrequency = (float) Math.max(minFrequency, q*samplingRate/n);
+		bins = Math.max(0, (int) Math.floor(binsPerOctave*Math.log(samplingRate/2/this.minFrequency)/Math.log(2)) + 1);
+		
+		// Spectral kernels, fft of the temporal kernels centered in the frame
+		FftPlan plan = FftPlanCache.getShared().get(n);
+		float[] re = new float[n], im = new float[n];
+		int[] count = new int[bins];
+		float[][] kernelRe = new float[bins][], kernelIm = new float[bins][];
+		int[][] kernelColumns = new int[bins][];
+		int total = 0;
+		for (int k=0; k<bins; k++) {
+			double f = this.minFrequency*Math.pow(ratio, k);
+			int length = Math.min(n, (int) Math.ceil(q*samplingRate/f));
+			float[] w = Window.HAMMING.createCoefficients(length);
+			double sum = 0;
+			for (int j=0; j<length; j++) sum += w[j];
+			Arrays.fill(re, 0);
+			Arrays.fill(im, 0);
+			int start = (n-length)/2;
+			for (int j=0; j<length; j++) {
+				double a = 2*Math.PI*f*j/samplingRate;
+				re[start+j] = (float) (w[j]/sum*Math.cos(a));
+				im[start+j] = (float) (w[j]/sum*Math.sin(a));
+			}
+			plan.transform(re, im, 0);
+			
+			// Keep significant items of the positive frequencies, undo the 1/n normalization
+			for (int j=0; j<=n/2; j++)
+				if (n*Math.hypot(re[j], im[j]) >= THRESHOLD) count[k]++;
+			kernelRe[k] = new float[count[k]];
+			kernelIm[k] = new float[count[k]];
+			kernelColumns[k] = new int[count[k]];
+			for (int j=0, p=0; j<=n/2; j++) {
+				if (n*Math.hypot(re[j], im[j]) >= THRESHOLD) {
+					kernelColumns[k][p] = j;
+					kernelRe[k][p] = n*re[j];
+					kernelIm[k][p] = -n*im[j];
+					p++;
+				}
+			}
+			total += count[k];
+		}
+		
+		// Pack into a single sparse matrix
+		rows = new int[bins+1];
+		columns = new int[total];
+		kr = new float[total];
+		ki = new float[total];
+		for (int k=0; k<bins; k++) {
+			rows[k+1] = rows[k]+count[k];
+			System.arraycopy(kernelColumns[k], 0, columns, rows[k], count[k]);
+			System.arraycopy(kernelRe[k], 0, kr, rows[k], count[k]);
+			System.arraycopy(kernelIm[k], 0, ki, rows[k], count[k]);
+		}
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFftSize() {			return n;	}
+	public int getBinCount() {			return bins;	}
+	public float getMinFrequency() {	return minFrequency;	}
+	public float getMaxFrequency() {	return getFrequency(bins-1);	}
+	public float getFrequency(int k) {	return minFrequency*(float) Math.pow(ratio, k);	}
+	public int getKernelSize() {		return kr.length;	}
+	
+	/**
+	 * Computes the constant-Q magnitudes from the n/2+1 bins of a rectangular windowed, 1/n normalized spectrum
+	 * @param out receives getBinCount() magnitudes (or dB if @param db is set) from @param outOffset
+	 */
+	public void apply(float[] re, float[] im, float[] out, int outOffset, boolean db) {
+		for (int k=0; k<bins; k++) {
+			float sr = 0, si = 0;
+			for (int p=rows[k]; p<rows[k+1]; p++) {
+				int j = columns[p];
+				sr += re[j]*kr[p] - im[j]*ki[p];
+				si += re[j]*ki[p] + im[j]*kr[p];
+			}
+			float m = (float) Math.sqrt(sr*sr + si*si);
+			out[outOffset+k] = db ? Decibel.fromMagnitude(m) : m;
+		}
+	}
+}
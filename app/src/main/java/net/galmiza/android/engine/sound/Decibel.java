@@ -0,0 +1,57 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Fast magnitude to decibel conversion (20.log10)
+ * log2 is split into the float exponent and a lookup of the mantissa top bits
+ * The absolute error is below 0.005 dB, values under FLOOR are clamped to FLOOR
+ */
+public final class Decibel {
+	
+	// Constants
+	public static final float FLOOR = -200f;
+	private static final float FLOOR_MAGNITUDE = 1e-10f; // 10^(FLOOR/20)
+	private static final float DB_PER_LOG2 = (float) (20*Math.log10(2));
+	private static final int TABLE_BITS = 10;
+	private static final int MANTISSA_SHIFT = 23-TABLE_BITS;
+	private static final int TABLE_MASK = (1<<TABLE_BITS)-1;
+	private static final float[] LOG2_MANTISSA = new float[1<<TABLE_BITS]; // log2 of the center of each mantissa interval
+	static {
+		for (int i=0; i<LOG2_MANTISSA.length; i++)
+			LOG2_MANTISSA[i] = (float) (Math.log(1 + (i+0.5)/LOG2_MANTISSA.length)/Math.log(2));
+	}
+	
+	private Decibel() {}
+	
+	/**
+	 * Returns 20.log10(m)
+	 */
+	public static float fromMagnitude(float m) {
+		if (!(m > FLOOR_MAGNITUDE)) return FLOOR;
+		int bits = Float.floatToRawIntBits(m);
+		int exponent = ((bits >>> 23) & 0xFF) - 127;
+		return DB_PER_LOG2*(exponent + LOG2_MANTISSA[(bits >>> MANTISSA_SHIFT) & TABLE_MASK]);
+	}
+	
+	/**
+	 * Converts n magnitudes, in and out can be the same array
+	 */
+	public static void fromMagnitudes(float[] in, int inOffset, float[] out, int outOffset, int n) {
+		for (int i=0; i<n; i++)
+			out[outOffset+i] = fromMagnitude(in[inOffset+i]);
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.Arrays;
+
+/**
+ * Polyphase FIR decimator of 16 bits samples
+ * Low-pass filters and keeps one sample out of factor, so that low frequencies are analyzed with a smaller fft
+ * The filter (windowed sinc) is split into factor phases of TAPS_PER_PHASE taps, each phase filters its own delay line
+ * at the output rate, so that only the kept samples are computed
+ * Content between about 0.84 and 1 times the output Nyquist frequency (0.42 to 0.5 times the output sampling rate) is attenuated, what lies above is rejected
+ */
+public class Decimator {
+	
+	// Constants
+	private static final int TAPS_PER_PHASE = 32;
+	private static final double CUTOFF = 0.42; // cutoff frequency, relative to the output sampling rate
+	
+	// Attributes
+	private final int factor;
+	private final float[][] phases; // phases[p][j] = h[j.factor+p]
+	private final float[][] lines; // delay line of each phase, duplicated so that reads never wrap
+	private int position; // index of the newest sample in the delay lines
+	private int phase; // samples received since the last output
+	
+	/**
+	 * Constructor
+	 * @param factor is the decimation factor (2, 4, 8, 16...)
+	 */
+	public Decimator(int factor) {
+		if (factor < 2) throw new IllegalArgumentException("Decimation factor must be at least 2, got "+factor);
+		this.factor = factor;
+		
+		// Low pass filter (windowed sinc)
+		int length = TAPS_PER_PHASE*factor;
+		float[] blackman = WindowCache.getShared().get(Window.BLACKMAN, length);
+		double cutoff = CUTOFF/factor;
+		double[] h = new double[length];
+		double sum = 0;
+		for (int k=0; k<length; k++) {
+			double t = k-(length-1)/2.0;
+			h[k] = (t == 0 ? 2*cutoff : Math.sin(2*Math.PI*cutoff*t)/(Math.PI*t))*blackman[k];
+			sum += h[k];
+		}
+		
+		// Polyphase decomposition
+		phases = new float[factor][TAPS_PER_PHASE];
+		lines = new float[factor][2*TAPS_PER_PHASE];
+		for (int p=0; p<factor; p++)
+			for (int j=0; j<TAPS_PER_PHASE; j++)
+				phases[p][j] = (float) (h[j*factor+p]/sum);
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFactor() {	return factor;	}
+	public int getTapCount() {	return TAPS_PER_PHASE*factor;	}
+	
+	/**
+	 * Maximum number of samples produced by @method process for @param length samples
+	 */
+	public int getOutputLength(int length) {
+		return (length+factor-1)/factor;
+	}
+	
+	/**
+	 * Clears the delay lines
+	 */
+	public void reset() {
+		for (float[] line : lines) Arrays.fill(line, 0);
+		position = 0;
+		phase = 0;
+	}
+	
+	/**
+	 * Feeds @param length samples starting at @param offset
+	 * @param out receives the decimated samples from @param outOffset
+	 * @return the number of samples written, exactly length/factor when length is a multiple of factor
+	 */
+	public int process(short[] in, int offset, int length, short[] out, int outOffset) {
+		int count = 0;
+		for (int i=offset; i<offset+length; i++) {
+			
+			// Sample i feeds phase factor-1-phase (the last sample of a block feeds phase 0)
+			float[] line = lines[factor-1-phase];
+			line[position] = line[position+TAPS_PER_PHASE] = in[i];
+			if (++phase < factor) continue;
+			phase = 0;
+			
+			// Output sample, sum of the phases
+			float y = 0;
+			for (int p=0; p<factor; p++) {
+				float[] taps = phases[p];
+				float[] x = lines[p];
+				for (int j=0; j<TAPS_PER_PHASE; j++)
+					y += taps[j]*x[position+j];
+			}
+			out[outOffset+count++] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(y)));
+			position = position == 0 ? TAPS_PER_PHASE-1 : position-1;
+		}
+		return count;
+	}
+}
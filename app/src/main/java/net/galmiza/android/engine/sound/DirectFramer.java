@@ -0,0 +1,165 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Cuts a stream of samples captured off-heap into frames of n samples, one every hop samples (hop from 1 to n)
+ * The producer fills and publishes the blocks of the ring returned by @method getRing, always with blockLength samples
+ * Blocks are consecutive slices of a single direct buffer, followed by a mirror of its first n-1 samples (as in StreamFramer),
+ * so that every frame is contiguous in getBuffer() and is read in place: samples never go through the java heap
+ * Only the mirrored samples are copied, within the direct buffer, once per lap of the ring
+ * The consumer takes the published blocks one by one with @method update, reads the frames, then calls @method release
+ */
+public class DirectFramer {
+	
+	// Constants
+	private static final int BYTES_PER_SHORT = 2;
+	
+	// Attributes
+	private final int n;
+	private final int hop;
+	private final int blockLength;
+	private final int capacity; // samples in the ring, before the mirror
+	private final ShortBuffer samples;
+	private final ByteBuffer[] blocks; // slices of the direct buffer, in ring order
+	private BlockRing<ByteBuffer> ring;
+	private long taken; // blocks taken by the consumer
+	private long released; // blocks given back to the producer
+	private long next; // stream position of the first sample of the next frame
+	
+	/**
+	 * Constructor
+	 * @param blockLength is the number of samples of a block
+	 * @param minBlocks is the number of blocks the producer can fill ahead of the consumer, besides the blocks held by a frame
+	 */
+	public DirectFramer(int n, int hop, int blockLength, int minBlocks) {
+		if (n < 1 || hop < 1 || hop > n || blockLength < 1 || minBlocks < 1)
+			throw new IllegalArgumentException("Invalid framing of "+n+" samples every "+hop+" samples in blocks of "+blockLength+" samples");
+		this.n = n;
+		this.hop = hop;
+		this.blockLength = blockLength;
+		
+		// The consumer holds the blocks of the next frame, at most (n-1)/blockLength+2 blocks, the count is a power of 2
+		int count = minBlocks + (n+blockLength-2)/blockLength + 1;
+		if (Integer.bitCount(count) > 1) count = Integer.highestOneBit(count) << 1;
+		capacity = count*blockLength;
+		
+		// Blocks are views of the ring, the driver writes in place
+		ByteBuffer memory = ByteBuffer.allocateDirect((capacity+n-1)*BYTES_PER_SHORT).order(ByteOrder.nativeOrder());
+		samples = memory.asShortBuffer();
+		blocks = new ByteBuffer[count];
+		for (int i=0; i<count; i++) {
+			memory.limit((i+1)*blockLength*BYTES_PER_SHORT);
+			memory.position(i*blockLength*BYTES_PER_SHORT);
+			blocks[i] = memory.slice().order(ByteOrder.nativeOrder());
+		}
+		reset();
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {				return n;	}
+	public int getHop() {						return hop;	}
+	public int getBlockLength() {				return blockLength;	}
+	public ShortBuffer getBuffer() {			return samples;	}
+	public BlockRing<ByteBuffer> getRing() {	return ring;	}
+	
+	/**
+	 * Largest number of frames available after @method update, once all previous frames were read
+	 */
+	public int getMaxFrameCount() {
+		return (blockLength-1)/hop + 1;
+	}
+	
+	/**
+	 * Clears the stream, the blocks are handed to a new ring (with its own counters)
+	 * Must not be called while the producer or the consumer use the ring
+	 */
+	public void reset() {
+		ring = new BlockRing<>(blocks);
+		taken = 0;
+		released = 0;
+		next = 0;
+	}
+	
+	/**
+	 * Consumer side, takes the oldest published block that was not taken yet
+	 * Samples written at the start of the ring are mirrored after its end
+	 * @return false if no block was published since the previous call
+	 */
+	public boolean update() {
+		if (released+ring.getCount() == taken) return false;
+		int position = (int) (taken % blocks.length)*blockLength;
+		for (int i=position; i<Math.min(position+blockLength, n-1); i++)
+			samples.put(capacity+i, samples.get(i));
+		taken++;
+		return true;
+	}
+	
+	/**
+	 * Number of frames that can be read
+	 */
+	public int getFrameCount() {
+		long available = taken*blockLength-next;
+		return available < n ? 0 : (int) ((available-n)/hop + 1);
+	}
+	
+	/**
+	 * Number of frames that follow each other in getBuffer(), every hop samples from the offset returned by @method next
+	 * Frames starting after the end of the ring are not counted, they are read from its beginning
+	 */
+	public int getContiguousFrameCount() {
+		int frames = getFrameCount();
+		if (frames == 0) return 0;
+		int offset = (int) (next % capacity);
+		return Math.min(frames, (capacity-1-offset)/hop + 1);
+	}
+	
+	/**
+	 * Moves to the next frame
+	 * @return the offset in getBuffer() of its first sample, or -1 if no full frame is available
+	 */
+	public int next() {
+		return next(1);
+	}
+	
+	/**
+	 * Moves past @param frames frames (at most getContiguousFrameCount()), read in a single batch
+	 * @return the offset in getBuffer() of the first sample of the first frame, or -1 if they are not available
+	 */
+	public int next(int frames) {
+		if (frames < 1 || frames > getContiguousFrameCount()) return -1;
+		int offset = (int) (next % capacity);
+		next += (long) frames*hop;
+		return offset;
+	}
+	
+	/**
+	 * Consumer side, gives the blocks that the next frames do not need back to the producer
+	 * Frames returned by @method next must be read before the call
+	 */
+	public void release() {
+		while (released < taken && (released+1)*blockLength <= next) {
+			ring.release();
+			released++;
+		}
+	}
+}
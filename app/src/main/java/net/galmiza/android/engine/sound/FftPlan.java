@@ -0,0 +1,158 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Precomputed data for the fft of a given size
+ * Holds the twiddle factors and the bit reversal permutation so that transforms do not perform any setup work
+ * Plans are immutable, they can be shared between threads
+ * Use FftPlanCache to share plans
+ */
+public class FftPlan {
+	
+	// Constants
+	public static final int MAX_LOG2_N = 16;
+	
+	// Attributes
+	private final int n;
+	private final int log2_n;
+	private final float[] cos; // cos(2*pi*k/n) for k in [0,n/2[
+	private final float[] sin; // sin(2*pi*k/n) for k in [0,n/2[
+	private final int[] swaps; // pairs of indexes exchanged by the bit reversal permutation
+	
+	/**
+	 * Constructor
+	 * @param n must be a power of two up to 2^MAX_LOG2_N
+	 */
+	public FftPlan(int n) {
+		if (n < 1 || n > 1<<MAX_LOG2_N || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Unsupported fft size "+n);
+		this.n = n;
+		this.log2_n = Integer.numberOfTrailingZeros(n);
+		
+		// Twiddle factors
+		cos = new float[n/2];
+		sin = new float[n/2];
+		for (int k=0; k<n/2; k++) {
+			cos[k] = (float) Math.cos(2*Math.PI*k/n);
+			sin[k] = (float) Math.sin(2*Math.PI*k/n);
+		}
+		
+		// Bit reversal permutation
+		int count = 0;
+		for (int i=0; i<n; i++)
+			if (reverse(i) > i) count++;
+		swaps = new int[2*count];
+		for (int i=0, p=0; i<n; i++) {
+			int j = reverse(i);
+			if (j > i) {
+				swaps[p++] = i;
+				swaps[p++] = j;
+			}
+		}
+	}
+	private int reverse(int i) {
+		return log2_n == 0 ? 0 : Integer.reverse(i) >>> (32-log2_n);
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getSize() {		return n;	}
+	public int getLog2Size() {	return log2_n;	}
+	
+	/**
+	 * Twiddle factor W^k = cos(2*pi*k/n) - i.sin(2*pi*k/n) for k in [0,n/2[
+	 */
+	public float getCos(int k) {	return cos[k];	}
+	public float getSin(int k) {	return sin[k];	}
+	
+	/**
+	 * In place complex fft
+	 * Radix-4 decimation in time, with one radix-2 stage when log2_n is odd
+	 * Forward transform (direction 0) is normalized by 1/n so that magnitudes of full scale signals stay within [0,1]
+	 */
+	public void transform(float[] re, float[] im, int direction) {
+		transform(re, im, 0, direction);
+	}
+	
+	/**
+	 * In place complex fft of the n items starting at @param offset
+	 * Plans are read only during transforms, several threads can use the same plan on distinct ranges
+	 */
+	public void transform(float[] re, float[] im, int offset, int direction) {
+		float sign = direction == 0 ? -1f : 1f;
+		int o = offset;
+		
+		// Reorder input
+		for (int p=0; p<swaps.length; p+=2) {
+			int i = swaps[p], j = swaps[p+1];
+			float t = re[o+i]; re[o+i] = re[o+j]; re[o+j] = t;
+			t = im[o+i]; im[o+i] = im[o+j]; im[o+j] = t;
+		}
+		
+		// Radix-2 stage when the number of stages is odd
+		int size = 1;
+		if ((log2_n & 1) == 1) {
+			for (int i=0; i<n; i+=2) {
+				float r = re[o+i+1], m = im[o+i+1];
+				re[o+i+1] = re[o+i]-r;	im[o+i+1] = im[o+i]-m;
+				re[o+i] += r;			im[o+i] += m;
+			}
+			size = 2;
+		}
+		
+		// Radix-4 stages, each merges four transforms of length size
+		while (size < n) {
+			int span = size*4;
+			int stride = n/span;
+			for (int k=0; k<size; k++) {
+				float wr = cos[k*stride], wi = sign*sin[k*stride];
+				float w2r = cos[2*k*stride], w2i = sign*sin[2*k*stride];
+				for (int i0=k; i0<n; i0+=span) {
+					int i1 = i0+size, i2 = i1+size, i3 = i2+size;
+					
+					// First radix-2 level
+					float t1r = w2r*re[o+i1] - w2i*im[o+i1], t1i = w2r*im[o+i1] + w2i*re[o+i1];
+					float t3r = w2r*re[o+i3] - w2i*im[o+i3], t3i = w2r*im[o+i3] + w2i*re[o+i3];
+					float b0r = re[o+i0]+t1r, b0i = im[o+i0]+t1i;
+					float b1r = re[o+i0]-t1r, b1i = im[o+i0]-t1i;
+					float b2r = re[o+i2]+t3r, b2i = im[o+i2]+t3i;
+					float b3r = re[o+i2]-t3r, b3i = im[o+i2]-t3i;
+					
+					// Second radix-2 level, w^size is -i (forward) or i (inverse)
+					float u2r = wr*b2r - wi*b2i, u2i = wr*b2i + wi*b2r;
+					float vr = wr*b3r - wi*b3i, vi = wr*b3i + wi*b3r;
+					float u3r = -sign*vi, u3i = sign*vr;
+					re[o+i0] = b0r+u2r;	im[o+i0] = b0i+u2i;
+					re[o+i2] = b0r-u2r;	im[o+i2] = b0i-u2i;
+					re[o+i1] = b1r+u3r;	im[o+i1] = b1i+u3i;
+					re[o+i3] = b1r-u3r;	im[o+i3] = b1i-u3i;
+				}
+			}
+			size = span;
+		}
+		
+		// Normalize
+		if (direction == 0) {
+			float s = 1f/n;
+			for (int i=0; i<n; i++) {
+				re[o+i] *= s;
+				im[o+i] *= s;
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Least recently used cache of fft plans
+ * Switching between a few resolutions becomes a lookup instead of a full setup
+ */
+public class FftPlanCache {
+	
+	// Constants
+	public static final int DEFAULT_CAPACITY = 4;
+	
+	// Shared instance
+	private static final FftPlanCache shared = new FftPlanCache(DEFAULT_CAPACITY);
+	public static FftPlanCache getShared() {
+		return shared;
+	}
+	
+	// Attributes
+	private final LruMap<Integer,FftPlan> plans;
+	
+	/**
+	 * Constructor
+	 * @param capacity is the maximum number of plans kept in memory
+	 */
+	public FftPlanCache(int capacity) {
+		plans = new LruMap<>(capacity);
+	}
+	
+	/**
+	 * Returns the plan for transforms of size n, builds it if needed
+	 */
+	public synchronized FftPlan get(int n) {
+		FftPlan plan = plans.get(n);
+		if (plan == null) {
+			plan = new FftPlan(n);
+			plans.put(n, plan);
+		}
+		return plan;
+	}
+	
+	public synchronized int size() {
+		return plans.size();
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Fixed-point fft of 16 bits samples, for devices where the float path cannot keep up
+ * Windowed samples are packed into a n/2 points complex transform computed on integers (Q15 twiddle factors and window)
+ * Block floating point: before each stage, the whole block is shifted right until it fits in 16 bits (sign included),
+ * the shifts are counted in a common exponent so that products never overflow 32 bits
+ * The block maximum is tracked while writing the previous stage, so that no extra pass is needed unless a shift is
+ * Only the n/2+1 output bins are converted to float, scaled like RealFft (normalized by 1/n)
+ * Buffers are allocated once in the constructor, an instance must only be used by one thread at a time
+ */
+public class FixedPointFft {
+	
+	// Constants
+	private static final int Q = 15; // fractional bits of the twiddle factors and window
+	private static final int ROUND = 1<<(Q-1);
+	private static final int LIMIT = 1<<15; // block maximum before a stage, products with Q15 factors then stay below 2^31
+	
+	// Attributes
+	private final int n;
+	private final int[] window; // Q15 window coefficients
+	private final int[] cos, sin; // Q15 twiddle factors W^k = cos(2.pi.k/n) - i.sin(2.pi.k/n), k<n/2
+	private final int[] reverse; // bit reversal permutation of n/2 points
+	private final int[] zr, zi;
+	private int exponent; // block exponent of the last transform
+	
+	/**
+	 * Constructor
+	 * @param n is the frame length (power of two, at least 4)
+	 */
+	public FixedPointFft(int n, Window window) {
+		if (n < 4 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Fft size must be a power of two, got "+n);
+		this.n = n;
+		int m = n/2;
+		
+		// Tables
+		float[] w = WindowCache.getShared().get(window, n);
+		this.window = new int[n];
+		for (int i=0; i<n; i++)
+			this.window[i] = toQ15(w[i]);
+		cos = new int[m];
+		sin = new int[m];
+		for (int k=0; k<m; k++) {
+			cos[k] = toQ15(Math.cos(2*Math.PI*k/n));
+			sin[k] = toQ15(Math.sin(2*Math.PI*k/n));
+		}
+		reverse = new int[m];
+		int bits = Integer.numberOfTrailingZeros(m);
+		for (int i=0; i<m; i++)
+			reverse[i] = Integer.reverse(i) >>> (32-bits);
+		
+		zr = new int[m];
+		zi = new int[m];
+	}
+	
+	/**
+	 * Rounds to Q15, 1 is saturated to the largest value
+	 */
+	private static int toQ15(double x) {
+		return (int) Math.max(-32768, Math.min(32767, Math.round(x*32768)));
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getSize() {		return n;	}
+	public int getExponent() {	return exponent;	}
+	
+	/**
+	 * Forward transform of the windowed frame of n samples starting at @param offset
+	 * @param re and @param im receive the n/2+1 bins (from DC to Nyquist)
+	 */
+	public void forward(short[] frame, int offset, float[] re, float[] im) {
+		
+		// Window and pack in bit reversed order, even samples as real part, odd samples as imaginary part
+		int max = 0;
+		for (int i=0; i<n/2; i++) {
+			int j = reverse[i];
+			zr[j] = (frame[offset+2*i]*window[2*i] + ROUND) >> Q;
+			zi[j] = (frame[offset+2*i+1]*window[2*i+1] + ROUND) >> Q;
+			max |= Math.abs(zr[j]) | Math.abs(zi[j]);
+		}
+		transform(re, im, max);
+	}
+	public void forward(ShortBuffer frame, int offset, float[] re, float[] im) {
+		
+		// Absolute reads leave the buffer position untouched
+		int max = 0;
+		for (int i=0; i<n/2; i++) {
+			int j = reverse[i];
+			zr[j] = (frame.get(offset+2*i)*window[2*i] + ROUND) >> Q;
+			zi[j] = (frame.get(offset+2*i+1)*window[2*i+1] + ROUND) >> Q;
+			max |= Math.abs(zr[j]) | Math.abs(zi[j]);
+		}
+		transform(re, im, max);
+	}
+	
+	/**
+	 * Radix-2 decimation in time of the packed samples, then split into the n/2+1 bins
+	 * @param max is a bound of the packed values (bitwise or of their absolute values)
+	 */
+	private void transform(float[] re, float[] im, int max) {
+		int m = n/2;
+		exponent = 0;
+		for (int length=2; length<=m; length<<=1) {
+			normalize(max);
+			max = 0;
+			int half = length/2;
+			int step = n/length; // W_length^j = W_n^(j.step)
+			for (int i=0; i<m; i+=length) {
+				for (int j=0; j<half; j++) {
+					int a = i+j, b = a+half;
+					int c = cos[j*step], s = sin[j*step];
+					int tr = (zr[b]*c + zi[b]*s + ROUND) >> Q;
+					int ti = (zi[b]*c - zr[b]*s + ROUND) >> Q;
+					zr[b] = zr[a]-tr;	zi[b] = zi[a]-ti;
+					zr[a] += tr;		zi[a] += ti;
+					max |= Math.abs(zr[a]) | Math.abs(zi[a]) | Math.abs(zr[b]) | Math.abs(zi[b]);
+				}
+			}
+		}
+		normalize(max);
+		
+		// Back to float, the complex transform is not normalized (the float engine divides by m)
+		float scale = (float) Math.scalb(1.0, exponent)/m/32768;
+		
+		// Nyquist and DC bins only depend on Z[0]
+		int a = zr[0], b = zi[0];
+		re[0] = 0.5f*(a+b)*scale;	im[0] = 0;
+		re[m] = 0.5f*(a-b)*scale;	im[m] = 0;
+		
+		// Split Z into even (E) and odd (O) spectra, then X[k] = (E[k] + W^k.O[k])/2 and X[m-k] = conj(E[k] - W^k.O[k])/2
+		for (int k=1; k<=m/2; k++) {
+			int zkr = zr[k], zki = zi[k];
+			int cr = zr[m-k], ci = zi[m-k];
+			int er = (zkr+cr) >> 1, ei = (zki-ci) >> 1;
+			int or = (zki+ci) >> 1, oi = -((zkr-cr) >> 1);
+			int tr = (or*cos[k] + oi*sin[k] + ROUND) >> Q;
+			int ti = (oi*cos[k] - or*sin[k] + ROUND) >> Q;
+			re[k] = 0.5f*(er+tr)*scale;		im[k] = 0.5f*(ei+ti)*scale;
+			re[m-k] = 0.5f*(er-tr)*scale;	im[m-k] = -0.5f*(ei-ti)*scale;
+		}
+	}
+	
+	/**
+	 * Shifts the block right until all values are below LIMIT, the shifts are added to the exponent
+	 */
+	private void normalize(int max) {
+		int shift = 0;
+		while ((max >> shift) >= LIMIT) shift++;
+		if (shift == 0) return;
+		int round = 1<<(shift-1);
+		for (int i=0; i<zr.length; i++) {
+			zr[i] = (zr[i] + round) >> shift;
+			zi[i] = (zi[i] + round) >> shift;
+		}
+		exponent += shift;
+	}
+}
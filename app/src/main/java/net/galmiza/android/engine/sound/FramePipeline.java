@@ -0,0 +1,177 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.nio.ShortBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Analyzes frames on a pool of worker threads and delivers the spectra in submission order
+ * Frames are copied into a ring of preallocated slots, so that the submitting (capture) thread never waits:
+ * when all the slots are in use, the frame is dropped and counted
+ * Each worker owns its analyzer, spectra are delivered one at a time (never concurrently) by the worker completing
+ * the oldest pending frame
+ */
+public class FramePipeline {
+	
+	// Constants
+	private static final int FREE = 0, QUEUED = 1, DONE = 2;
+	
+	/**
+	 * Creates the analyzer of a worker (analyzers hold buffers and cannot be shared)
+	 */
+	public interface AnalyzerFactory {
+		SpectrumAnalyzer create();
+	}
+	
+	/**
+	 * Receives the spectra in submission order
+	 * @param spectrum is only valid during the call
+	 * @param last is the flag given when the frame was submitted
+	 */
+	public interface OnSpectrumListener {
+		void onSpectrum(float[] spectrum, boolean last);
+	}
+	
+	/**
+	 * Frame in the pipeline
+	 */
+	private static class Slot {
+		final short[] samples;
+		final float[] spectrum;
+		boolean last;
+		volatile int state = FREE;
+		
+		Slot(int n, int bins) {
+			samples = new short[n];
+			spectrum = new float[bins];
+		}
+	}
+	
+	// Attributes
+	private final int n;
+	private final boolean db;
+	private final Slot[] slots; // slot of frame s is slots[s % slots.length]
+	private final BlockingQueue<Slot> queue;
+	private final Thread[] workers;
+	private final OnSpectrumListener listener;
+	private final Object delivery = new Object();
+	private long submitted; // frames accepted, only used by the submitting thread
+	private long delivered; // frames delivered, guarded by delivery
+	private volatile long dropped;
+	
+	/**
+	 * Constructor, starts the workers
+	 * @param capacity is the number of frames that can be pending
+	 * @param db is passed to the analyzers (see SpectrumAnalyzer)
+	 */
+	public FramePipeline(int workers, int capacity, AnalyzerFactory factory, boolean db, OnSpectrumListener listener) {
+		if (workers < 1 || capacity < workers)
+			throw new IllegalArgumentException("Invalid pipeline of "+workers+" workers and "+capacity+" slots");
+		this.db = db;
+		this.listener = listener;
+		queue = new ArrayBlockingQueue<>(capacity);
+		this.workers = new Thread[workers];
+		SpectrumAnalyzer first = null;
+		for (int i=0; i<workers; i++) {
+			final SpectrumAnalyzer analyzer = factory.create();
+			if (first == null) first = analyzer;
+			this.workers[i] = new Thread(() -> work(analyzer), "FramePipeline-"+i);
+			this.workers[i].setDaemon(true);
+		}
+		n = first.getFrameLength();
+		slots = new Slot[capacity];
+		for (int i=0; i<capacity; i++)
+			slots[i] = new Slot(n, first.getBinCount());
+		for (Thread t : this.workers) t.start();
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {	return n;	}
+	public long getDroppedFrames() {	return dropped;	}
+	
+	/**
+	 * Queues the frame of n samples starting at @param offset, never blocks
+	 * @return false if the frame was dropped because all the slots are in use
+	 */
+	public boolean submit(short[] buffer, int offset, boolean last) {
+		Slot slot = acquire();
+		if (slot == null) return false;
+		System.arraycopy(buffer, offset, slot.samples, 0, n);
+		return queue(slot, last);
+	}
+	public boolean submit(ShortBuffer buffer, int offset, boolean last) {
+		Slot slot = acquire();
+		if (slot == null) return false;
+		for (int i=0; i<n; i++)
+			slot.samples[i] = buffer.get(offset+i);
+		return queue(slot, last);
+	}
+	private Slot acquire() {
+		Slot slot = slots[(int) (submitted % slots.length)];
+		if (slot.state != FREE) {
+			dropped++; // only written by the submitting thread
+			return null;
+		}
+		return slot;
+	}
+	private boolean queue(Slot slot, boolean last) {
+		slot.last = last;
+		slot.state = QUEUED;
+		submitted++;
+		return queue.offer(slot); // cannot fail, there are as many places as slots
+	}
+	
+	/**
+	 * Stops the workers and waits for them, pending frames are discarded
+	 * A delivery in progress completes before the method returns, none starts after
+	 */
+	public void stop() {
+		for (Thread t : workers) t.interrupt();
+		for (Thread t : workers)
+			try { t.join(); } catch (InterruptedException e) { e.printStackTrace(); }
+	}
+	
+	/**
+	 * Worker loop
+	 */
+	private void work(SpectrumAnalyzer analyzer) {
+		try {
+			while (true) {
+				Slot slot = queue.take();
+				analyzer.analyze(slot.samples, 0, slot.spectrum, 0, db);
+				synchronized (delivery) {
+					slot.state = DONE;
+					
+					// Deliver the completed frames that are next in sequence
+					Slot next = slots[(int) (delivered % slots.length)];
+					while (next.state == DONE) {
+						if (Thread.currentThread().isInterrupted()) return;
+						listener.onSpectrum(next.spectrum, next.last);
+						next.state = FREE;
+						delivered++;
+						next = slots[(int) (delivered % slots.length)];
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// Stopped
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Bank of Goertzel filters monitoring a few frequencies
+ * Samples are streamed in chunks of any length, magnitudes are updated every blockLength samples
+ * Costs one multiply-add per sample and per frequency, no allocation once built
+ * Magnitudes are scaled like the spectrum of SpectrumAnalyzer (a full scale sine gives 0.5)
+ */
+public class GoertzelBank {
+	
+	// Constants
+	private static final float SHORT_SCALE = 1f/32768;
+	
+	// Attributes
+	private final float[] frequencies;
+	private final float[] coefficients; // 2.cos(2*pi*f/fs)
+	private final float[] s1, s2; // filter states
+	private final float[] magnitudes; // magnitudes of the last complete block
+	private final int blockLength;
+	private int count; // samples accumulated in the current block
+	
+	/**
+	 * Constructor
+	 * @param frequencies in Hz, need not be aligned on fft bins
+	 * @param blockLength is the number of samples per measure (frequency resolution is samplingRate/blockLength)
+	 */
+	public GoertzelBank(int samplingRate, float[] frequencies, int blockLength) {
+		if (blockLength < 1) throw new IllegalArgumentException("Block length must be positive, got "+blockLength);
+		int n = frequencies.length;
+		this.frequencies = frequencies.clone();
+		this.blockLength = blockLength;
+		coefficients = new float[n];
+		for (int f=0; f<n; f++)
+			coefficients[f] = (float) (2*Math.cos(2*Math.PI*frequencies[f]/samplingRate));
+		s1 = new float[n];
+		s2 = new float[n];
+		magnitudes = new float[n];
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getBlockLength() {		return blockLength;	}
+	public float[] getFrequencies() {	return frequencies;	}
+	public float[] getMagnitudes() {	return magnitudes;	}
+	
+	/**
+	 * Feeds @param length samples starting at @param offset
+	 * @return the number of blocks completed, magnitudes hold the measure of the last one
+	 */
+	public int process(short[] buffer, int offset, int length) {
+		int blocks = 0;
+		int nf = frequencies.length;
+		for (int i=0; i<length; ) {
+			int chunk = Math.min(length-i, blockLength-count);
+			int start = offset+i;
+			for (int f=0; f<nf; f++) {
+				float c = coefficients[f], a = s1[f], b = s2[f];
+				for (int j=start; j<start+chunk; j++) {
+					float s = buffer[j]*SHORT_SCALE + c*a - b;
+					b = a;
+					a = s;
+				}
+				s1[f] = a;
+				s2[f] = b;
+			}
+			i += chunk;
+			count += chunk;
+			if (count == blockLength) {
+				measure();
+				blocks++;
+			}
+		}
+		return blocks;
+	}
+	
+	/**
+	 * Computes magnitudes from the filter states and resets them for the next block
+	 */
+	private void measure() {
+		for (int f=0; f<frequencies.length; f++) {
+			float a = s1[f], b = s2[f];
+			float power = a*a + b*b - coefficients[f]*a*b;
+			magnitudes[f] = (float) Math.sqrt(Math.max(0, power))/blockLength;
+			s1[f] = 0;
+			s2[f] = 0;
+		}
+		count = 0;
+	}
+	
+	/**
+	 * Drops the partial block
+	 */
+	public void reset() {
+		for (int f=0; f<frequencies.length; f++) {
+			s1[f] = 0;
+			s2[f] = 0;
+		}
+		count = 0;
+	}
+}
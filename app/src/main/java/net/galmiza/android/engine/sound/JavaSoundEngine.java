@@ -0,0 +1,134 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java implementation of the sound engine
+ * Mirrors the native library so that it can be used as a fallback or a reference
+ * Transforms are delegated to fft plans (radix-4 decimation in time) taken from the shared plan cache
+ * Large transforms (from 2^ParallelFft.MIN_LOG2_N points) are split across cores when several are available
+ * No allocation happens once a plan is built
+ */
+public class JavaSoundEngine implements Transform {
+	
+	// Constants
+	private static final float SHORT_SCALE = 1f/32768;
+	
+	// Attributes
+	private final FftPlanCache plans = FftPlanCache.getShared();
+	private final WindowCache windows = WindowCache.getShared();
+	private FftPlan plan; // last used plan, avoids a cache lookup while the size does not change
+	private ParallelFft parallel; // last used multi-threaded transform
+	
+	
+	/**
+	 * Twiddle factors are held by fft plans, nothing to initialize globally
+	 */
+	@Override
+	public void initFSin() {}
+	
+	/**
+	 * In place complex fft of size 2^log2_n
+	 * Forward transform is normalized by 1/n so that magnitudes of full scale signals stay within [0,1]
+	 */
+	@Override
+	public void fft(float[] re, float[] im, int log2_n, int direction) {
+		if (log2_n < 0 || log2_n > FftPlan.MAX_LOG2_N)
+			throw new IllegalArgumentException("Unsupported fft size 2^"+log2_n);
+		if (ParallelFft.isWorthwhile(log2_n)) {
+			ParallelFft f = parallel;
+			if (f == null || f.getSize() != 1 << log2_n)
+				parallel = f = new ParallelFft(1 << log2_n, ParallelFft.getSharedPool());
+			f.transform(re, im, direction);
+			return;
+		}
+		FftPlan p = plan;
+		if (p == null || p.getLog2Size() != log2_n)
+			plan = p = plans.get(1 << log2_n);
+		p.transform(re, im, direction);
+	}
+	
+	/**
+	 * Complex representations
+	 * Polar form stores magnitude in re and phase in im
+	 */
+	@Override
+	public void toPolar(float[] re, float[] im, int n) {
+		for (int i=0; i<n; i++) {
+			float r = re[i], m = im[i];
+			re[i] = (float) Math.sqrt(r*r + m*m);
+			im[i] = (float) Math.atan2(m, r);
+		}
+	}
+	@Override
+	public void toCartesian(float[] re, float[] im, int n) {
+		for (int i=0; i<n; i++) {
+			float a = re[i], p = im[i];
+			re[i] = a*(float) Math.cos(p);
+			im[i] = a*(float) Math.sin(p);
+		}
+	}
+	
+	/**
+	 * Sample conversion, 16 bits samples are mapped to [-1,1[
+	 */
+	@Override
+	public void shortToFloat(short[] in, float[] out, int n) {
+		for (int i=0; i<n; i++)
+			out[i] = in[i]*SHORT_SCALE;
+	}
+	@Override
+	public void floatToShort(float[] in, short[] out, int n) {
+		for (int i=0; i<n; i++)
+			out[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, in[i]*32768));
+	}
+	@Override
+	public void clearShort(short[] x, int n) {
+		Arrays.fill(x, 0, n, (short) 0);
+	}
+	@Override
+	public void clearFloat(float[] x, int n) {
+		Arrays.fill(x, 0, n, 0f);
+	}
+	
+	/**
+	 * Windowing functions, coefficients are taken from the shared window cache
+	 */
+	@Override
+	public void windowRectangular(float[] x, int n) {}
+	@Override
+	public void windowTriangular(float[] x, int n) {		window(Window.TRIANGULAR, x, n);	}
+	@Override
+	public void windowWelch(float[] x, int n) {				window(Window.WELCH, x, n);	}
+	@Override
+	public void windowHanning(float[] x, int n) {			window(Window.HANNING, x, n);	}
+	@Override
+	public void windowHamming(float[] x, int n) {			window(Window.HAMMING, x, n);	}
+	@Override
+	public void windowBlackman(float[] x, int n) {			window(Window.BLACKMAN, x, n);	}
+	@Override
+	public void windowNuttall(float[] x, int n) {			window(Window.NUTTALL, x, n);	}
+	@Override
+	public void windowBlackmanNuttall(float[] x, int n) {	window(Window.BLACKMAN_NUTTALL, x, n);	}
+	@Override
+	public void windowBlackmanHarris(float[] x, int n) {	window(Window.BLACKMAN_HARRIS, x, n);	}
+	
+	private void window(Window window, float[] x, int n) {
+		WindowCache.apply(x, windows.get(window, n), n);
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map keeping the most recently accessed entries up to a given capacity
+ * Backs the caches of precomputed tables (fft plans, kernels), not synchronized
+ */
+class LruMap<K,V> extends LinkedHashMap<K,V> {
+	
+	// Constants
+	private static final long serialVersionUID = 1L;
+	
+	// Attributes
+	private final int capacity;
+	
+	LruMap(int capacity) {
+		super(capacity+1, 1f, true);
+		this.capacity = capacity;
+	}
+	
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+		return size() > capacity;
+	}
+}
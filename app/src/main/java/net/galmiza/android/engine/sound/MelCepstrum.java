@@ -0,0 +1,155 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Streaming mel filterbank and cepstral coefficients (MFCC)
+ * Reads the n/2+1 magnitudes of a frame, sums the power in triangular filters evenly spaced on the mel scale,
+ * takes the natural log of the energies and decorrelates them with an orthonormal DCT-II
+ * Filters are stored sparsely (only the bins under each triangle), DCT matrices are shared between instances
+ * Feature vectors are reused from frame to frame, listeners must copy them if they keep them
+ */
+public class MelCepstrum {
+	
+	// Constants
+	private static final float ENERGY_FLOOR = 1e-10f; // avoids log(0) on silent frames
+	private static final int CACHE_CAPACITY = 2;
+	
+	// Shared DCT matrices
+	private static final LruMap<String,float[]> dcts = new LruMap<>(CACHE_CAPACITY);
+	
+	/**
+	 * Listener of the feature vectors
+	 */
+	public interface OnFeaturesListener {
+		void onFeatures(float[] logMel, float[] mfcc);
+	}
+	
+	// Attributes
+	private final int filters;
+	private final int coefficients;
+	private final int[] start; // first bin of each filter
+	private final int[] rows; // weights of filter m are in [rows[m], rows[m+1][
+	private final float[] weights;
+	private final float[] dct; // coefficients x filters, row major
+	private final float[] logMel;
+	private final float[] mfcc;
+	private OnFeaturesListener listener;
+	
+	/**
+	 * Constructor
+	 * @param n is the fft size, frames hold n/2+1 magnitudes
+	 * @param filters triangles overlap by half, the first starts at @param minFrequency and the last ends at @param maxFrequency
+	 * @param coefficients is the number of cepstral coefficients kept (at most @param filters)
+	 */
+	public MelCepstrum(int samplingRate, int n, int filters, int coefficients, float minFrequency, float maxFrequency) {
+		if (coefficients > filters)
+			throw new IllegalArgumentException("Cannot keep "+coefficients+" coefficients from "+filters+" filters");
+		if (minFrequency < 0 || maxFrequency > samplingRate/2f || minFrequency >= maxFrequency)
+			throw new IllegalArgumentException("Invalid band "+minFrequency+"-"+maxFrequency+" Hz");
+		this.filters = filters;
+		this.coefficients = coefficients;
+		
+		// Edges of the triangles, evenly spaced in mel
+		float[] edges = new float[filters+2];
+		float melMin = toMel(minFrequency), melMax = toMel(maxFrequency);
+		for (int m=0; m<filters+2; m++)
+			edges[m] = toFrequency(melMin + (melMax-melMin)*m/(filters+1));
+		
+		// Sparse filterbank
+		float binWidth = (float) samplingRate/n;
+		start = new int[filters];
+		rows = new int[filters+1];
+		for (int m=0; m<filters; m++) {
+			start[m] = (int) Math.ceil(edges[m]/binWidth);
+			int end = Math.min(n/2, (int) Math.floor(edges[m+2]/binWidth));
+			rows[m+1] = rows[m] + Math.max(0, end-start[m]+1);
+		}
+		weights = new float[rows[filters]];
+		for (int m=0; m<filters; m++) {
+			for (int p=rows[m]; p<rows[m+1]; p++) {
+				float f = (start[m]+p-rows[m])*binWidth;
+				weights[p] = f <= edges[m+1] ?
+						(f-edges[m])/(edges[m+1]-edges[m]) :
+						(edges[m+2]-f)/(edges[m+2]-edges[m+1]);
+			}
+		}
+		
+		dct = getDct(filters, coefficients);
+		logMel = new float[filters];
+		mfcc = new float[coefficients];
+	}
+	
+	/**
+	 * Returns the orthonormal DCT-II matrix (only the first @param coefficients rows), shared between instances
+	 */
+	private static float[] getDct(int filters, int coefficients) {
+		String key = filters+"x"+coefficients;
+		synchronized (dcts) {
+			float[] dct = dcts.get(key);
+			if (dct == null) {
+				dct = new float[coefficients*filters];
+				for (int k=0; k<coefficients; k++) {
+					double scale = Math.sqrt((k == 0 ? 1.0 : 2.0)/filters);
+					for (int m=0; m<filters; m++)
+						dct[k*filters+m] = (float) (scale*Math.cos(Math.PI*k*(m+0.5)/filters));
+				}
+				dcts.put(key, dct);
+			}
+			return dct;
+		}
+	}
+	
+	/**
+	 * Mel scale conversions
+	 */
+	public static float toMel(float frequency) {	return (float) (2595*Math.log10(1+frequency/700));	}
+	public static float toFrequency(float mel) {	return (float) (700*(Math.pow(10, mel/2595)-1));	}
+	
+	/**
+	 * Simple gets and sets
+	 */
+	public int getFilterCount() {			return filters;	}
+	public int getCoefficientCount() {		return coefficients;	}
+	public float[] getLogMel() {			return logMel;	}
+	public float[] getMfcc() {				return mfcc;	}
+	public void setOnFeaturesListener(OnFeaturesListener listener) {	this.listener = listener;	}
+	
+	/**
+	 * Computes the features of a frame of n/2+1 magnitudes starting at @param offset
+	 * Results are available with @method getLogMel and @method getMfcc, and are published to the listener
+	 */
+	public void process(float[] magnitudes, int offset) {
+		
+		// Log mel energies
+		for (int m=0; m<filters; m++) {
+			float e = 0;
+			for (int p=rows[m], j=offset+start[m]; p<rows[m+1]; p++, j++)
+				e += weights[p]*magnitudes[j]*magnitudes[j];
+			logMel[m] = (float) Math.log(Math.max(e, ENERGY_FLOOR));
+		}
+		
+		// Cepstrum
+		for (int k=0, r=0; k<coefficients; k++, r+=filters) {
+			float c = 0;
+			for (int m=0; m<filters; m++)
+				c += dct[r+m]*logMel[m];
+			mfcc[k] = c;
+		}
+		
+		if (listener != null)	listener.onFeatures(logMel, mfcc);
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-threaded complex fft for large sizes (six-step algorithm)
+ * The n = n1.n2 input is seen as a n2 x n1 matrix, then:
+ * transpose, n2 points ffts of the n1 rows, twiddle by W^(j1.k2), transpose, n1 points ffts of the n2 rows, transpose (and copy back)
+ * Rows and transpositions are split into ranges processed by a fork-join pool
+ * Tasks and scratch buffers are allocated once in the constructor, an instance must only be used by one thread at a time
+ */
+public class ParallelFft {
+	
+	// Constants
+	public static final int MIN_LOG2_N = 13; // smaller transforms are faster on a single thread
+	private static final int TASKS_PER_THREAD = 2;
+	private static final int TRANSPOSE_IN = 0, COLUMNS = 1, TRANSPOSE_MID = 2, ROWS = 3, TRANSPOSE_OUT = 4, COPY = 5;
+	
+	// Shared pool
+	private static ForkJoinPool sharedPool;
+	
+	/**
+	 * Returns a pool with one thread per core
+	 */
+	public static synchronized ForkJoinPool getSharedPool() {
+		if (sharedPool == null)
+			sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		return sharedPool;
+	}
+	
+	/**
+	 * Tells if a transform of size 2^log2_n should run on several threads
+	 */
+	public static boolean isWorthwhile(int log2_n) {
+		return log2_n >= MIN_LOG2_N && log2_n <= FftPlan.MAX_LOG2_N && Runtime.getRuntime().availableProcessors() > 1;
+	}
+	
+	// Attributes
+	private final ForkJoinPool pool;
+	private final int n, n1, n2;
+	private final FftPlan plan, plan1, plan2; // twiddle factors of size n, ffts of size n1 and n2
+	private final float[] sr, si; // scratch (transposed matrix)
+	private final Range[] ranges;
+	private final Root root = new Root();
+	private float[] re, im; // arrays of the running transform
+	private int direction;
+	private int step;
+	
+	/**
+	 * Constructor
+	 * @param n is a power of two up to 2^FftPlan.MAX_LOG2_N
+	 */
+	public ParallelFft(int n, ForkJoinPool pool) {
+		if (n < 4 || n > 1<<FftPlan.MAX_LOG2_N || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Unsupported fft size "+n);
+		this.pool = pool;
+		this.n = n;
+		int log2_n = Integer.numberOfTrailingZeros(n);
+		n1 = 1 << (log2_n/2);
+		n2 = n/n1;
+		FftPlanCache plans = FftPlanCache.getShared();
+		plan = plans.get(n);
+		plan1 = plans.get(n1);
+		plan2 = plans.get(n2);
+		sr = new float[n];
+		si = new float[n];
+		ranges = new Range[TASKS_PER_THREAD*pool.getParallelism()];
+		for (int i=0; i<ranges.length; i++)
+			ranges[i] = new Range(i);
+	}
+	
+	public int getSize() {
+		return n;
+	}
+	
+	/**
+	 * In place complex fft, same convention as FftPlan (forward transform normalized by 1/n)
+	 */
+	public void transform(float[] re, float[] im, int direction) {
+		this.re = re;
+		this.im = im;
+		this.direction = direction;
+		root.reinitialize();
+		pool.invoke(root);
+		this.re = this.im = null;
+	}
+	
+	/**
+	 * Runs the steps one after another, each one split into ranges
+	 */
+	private class Root extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected void compute() {
+			for (step=TRANSPOSE_IN; step<=COPY; step++) {
+				for (Range r : ranges) r.reinitialize();
+				invokeAll(ranges);
+			}
+		}
+	}
+	
+	/**
+	 * Part of a step, range index out of ranges.length
+	 */
+	private class Range extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int index;
+		
+		Range(int index) {
+			this.index = index;
+		}
+		
+		@Override
+		protected void compute() {
+			int rows = step == TRANSPOSE_MID || step == ROWS ? n2 : n1; // rows written by the step
+			int from = rows*index/ranges.length, to = rows*(index+1)/ranges.length;
+			switch (step) {
+			case TRANSPOSE_IN:		transpose(re, im, sr, si, n1, from, to);	break; // scratch row j1 = input column j1
+			case COLUMNS:			columns(from, to);	break;
+			case TRANSPOSE_MID:		transpose(sr, si, re, im, n2, from, to);	break;
+			case ROWS:
+				for (int k2=from; k2<to; k2++) plan1.transform(re, im, k2*n1, direction);
+				break;
+			case TRANSPOSE_OUT:		transpose(re, im, sr, si, n1, from, to);	break; // reads all the rows, copy back in a next step
+			case COPY:				copy(from, to);	break;
+			}
+		}
+	}
+	
+	/**
+	 * Writes rows [from,to[ of the transposition of a matrix of @param columns columns
+	 * The source has n/columns rows, the destination has columns rows of n/columns items
+	 */
+	private void transpose(float[] ar, float[] ai, float[] br, float[] bi, int columns, int from, int to) {
+		int rows = n/columns;
+		for (int c=from; c<to; c++) {
+			for (int r=0, src=c, dst=c*rows; r<rows; r++, src+=columns, dst++) {
+				br[dst] = ar[src];
+				bi[dst] = ai[src];
+			}
+		}
+	}
+	
+	/**
+	 * Ffts of the scratch rows [from,to[ (input columns j1), then multiplication by W^(j1.k2)
+	 */
+	private void columns(int from, int to) {
+		float sign = direction == 0 ? -1f : 1f;
+		for (int j1=from; j1<to; j1++) {
+			int o = j1*n2;
+			plan2.transform(sr, si, o, direction);
+			for (int k2=1, k=j1; k2<n2; k2++, k+=j1) {
+				int m = k & (n-1);
+				float wr, wi;
+				if (m < n/2) {	wr = plan.getCos(m);		wi = sign*plan.getSin(m);	}
+				else {			wr = -plan.getCos(m-n/2);	wi = -sign*plan.getSin(m-n/2);	}
+				float xr = sr[o+k2], xi = si[o+k2];
+				sr[o+k2] = xr*wr - xi*wi;
+				si[o+k2] = xr*wi + xi*wr;
+			}
+		}
+	}
+	
+	/**
+	 * Copies back the result rows [from,to[ (n2 items each) from the scratch
+	 */
+	private void copy(int from, int to) {
+		System.arraycopy(sr, from*n2, re, from*n2, (to-from)*n2);
+		System.arraycopy(si, from*n2, im, from*n2, (to-from)*n2);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Streaming fundamental frequency estimation (YIN)
+ * Every hop samples, the difference function of the last n samples is computed for lags up to n/2:
+ * d(t) = sum (x[j]-x[j+t])^2 = e(0) + e(t) - 2.r(t) with r the cross-correlation of the first half with the whole frame,
+ * computed with a single n points complex fft of the engine (first half as real part, frame as imaginary part) and its inverse
+ * The pitch is the first minimum of the cumulative mean normalized difference below the threshold, refined by parabolic interpolation
+ * Buffers are allocated once in the constructor, an instance must only be used by one thread at a time
+ */
+public class PitchTracker {
+	
+	// Constants
+	public static final float DEFAULT_THRESHOLD = 0.15f;
+	private static final float SHORT_SCALE = 1f/32768;
+	
+	// Attributes
+	private final Transform engine;
+	private final int samplingRate;
+	private final int n;
+	private final int log2_n;
+	private final int hop;
+	private final int minLag, maxLag;
+	private final float threshold;
+	private final float[] ring; // last n samples
+	private final float[] re, im;
+	private final float[] difference; // cumulative mean normalized difference, n/2 lags
+	private int position; // next write index in ring
+	private int count; // samples since the last estimate
+	private int filled; // samples in ring, up to n
+	private volatile float pitch; // Hz, 0 if unvoiced
+	private volatile float confidence;
+	
+	/**
+	 * Constructor
+	 * @param n is the analysis frame (power of two), lags go up to n/2 so @param minFrequency needs n >= 2.samplingRate/minFrequency
+	 * @param hop is the number of samples between estimates
+	 */
+	public PitchTracker(Transform engine, int samplingRate, int n, int hop, float minFrequency, float maxFrequency, float threshold) {
+		if (n < 4 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Frame length must be a power of two, got "+n);
+		if (hop < 1) throw new IllegalArgumentException("Hop size must be positive, got "+hop);
+		this.engine = engine;
+		this.samplingRate = samplingRate;
+		this.n = n;
+		this.log2_n = Integer.numberOfTrailingZeros(n);
+		this.hop = hop;
+		this.threshold = threshold;
+		minLag = Math.max(2, (int) Math.floor(samplingRate/maxFrequency));
+		maxLag = Math.min(n/2-2, (int) Math.ceil(samplingRate/minFrequency));
+		if (minLag >= maxLag)
+			throw new IllegalArgumentException("Frame of "+n+" samples too short for "+minFrequency+"-"+maxFrequency+" Hz");
+		ring = new float[n];
+		re = new float[n];
+		im = new float[n];
+		difference = new float[n/2];
+	}
+	
+	/**
+	 * Smallest power of two frame needed to track down to @param minFrequency
+	 */
+	public static int getFrameLength(int samplingRate, float minFrequency) {
+		int lag = (int) Math.ceil(samplingRate/minFrequency)+2;
+		return Integer.highestOneBit(2*lag-1) << 1;
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {	return n;	}
+	public float getPitch() {		return pitch;	}
+	public float getConfidence() {	return confidence;	}
+	
+	/**
+	 * Feeds @param length samples starting at @param offset
+	 * @return the number of estimates computed, the last one is available with @method getPitch
+	 */
+	public int process(short[] buffer, int offset, int length) {
+		int estimates = 0;
+		for (int i=offset; i<offset+length; i++) {
+			ring[position] = buffer[i]*SHORT_SCALE;
+			position = (position+1) & (n-1);
+			if (filled < n) filled++;
+			if (++count >= hop && filled == n) {
+				count = 0;
+				estimate();
+				estimates++;
+			}
+		}
+		return estimates;
+	}
+	
+	/**
+	 * YIN on the last n samples
+	 */
+	private void estimate() {
+		int half = n/2;
+		
+		// Pack the first half (a) as real part and the frame (b) as imaginary part
+		float energy = 0; // e(0), energy of the first half
+		for (int j=0; j<n; j++) {
+			float x = ring[(position+j) & (n-1)];
+			re[j] = j < half ? x : 0;
+			im[j] = x;
+			if (j < half) energy += x*x;
+		}
+		engine.fft(re, im, log2_n, 0);
+		
+		// Separate A and B from Z = A + i.B, then conj(A).B
+		for (int k=0; k<=half; k++) {
+			int m = (n-k) & (n-1);
+			float zr = re[k], zi = im[k], cr = re[m], ci = -im[m]; // conj(Z[-k])
+			float ar = 0.5f*(zr+cr), ai = 0.5f*(zi+ci);
+			float br = 0.5f*(zi-ci), bi = -0.5f*(zr-cr);
+			float pr = ar*br + ai*bi, pi = ar*bi - ai*br;
+			re[k] = pr;	im[k] = pi;
+			if (m != k) {	re[m] = pr;	im[m] = -pi;	} // real correlation, hermitian spectrum
+		}
+		engine.fft(re, im, log2_n, 1); // unnormalized inverse, r(t) = n.re[t]
+		
+		// Difference, e(t) is the energy of the window starting at t
+		float windowEnergy = energy;
+		float sum = 0;
+		difference[0] = 1;
+		for (int t=1; t<half; t++) {
+			float leaving = ring[(position+t-1) & (n-1)], entering = ring[(position+t-1+half) & (n-1)];
+			windowEnergy += entering*entering - leaving*leaving;
+			float d = Math.max(0, energy + windowEnergy - 2*n*re[t]);
+			sum += d;
+			difference[t] = sum > 0 ? d*t/sum : 1;
+		}
+		
+		// First minimum below the threshold, or the global minimum if none
+		int best = -1;
+		for (int t=minLag; t<=maxLag; t++) {
+			if (difference[t] < threshold) {
+				while (t+1 <= maxLag && difference[t+1] < difference[t]) t++;
+				best = t;
+				break;
+			}
+		}
+		if (best < 0) {
+			best = minLag;
+			for (int t=minLag+1; t<=maxLag; t++)
+				if (difference[t] < difference[best]) best = t;
+		}
+		
+		// Parabolic interpolation
+		float a = difference[best-1], b = difference[best], c = difference[best+1];
+		float denominator = a - 2*b + c;
+		float lag = best + (denominator > 0 ? 0.5f*(a-c)/denominator : 0);
+		confidence = Math.max(0, 1-b);
+		pitch = b < threshold ? samplingRate/lag : 0;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Fft of real signals
+ * N real samples are packed into a N/2 complex transform (even samples as real part, odd samples as imaginary part)
+ * The N/2+1 non redundant bins are then extracted from the half size spectrum
+ * The output is scaled like a N points forward fft of the engine (normalized by 1/N)
+ */
+public class RealFft {
+	
+	// Attributes
+	private final FftPlan plan; // twiddle factors W^k of size n
+	private final int n;
+	private final int log2_n;
+	
+	/**
+	 * Constructor
+	 * Twiddle factors used to split the half size spectrum are taken from the shared plan cache
+	 */
+	public RealFft(int n) {
+		if (n < 2 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Fft size must be a power of two, got "+n);
+		this.plan = FftPlanCache.getShared().get(n);
+		this.n = n;
+		this.log2_n = plan.getLog2Size();
+	}
+	
+	public int getSize() {
+		return n;
+	}
+	
+	/**
+	 * Number of meaningful bins in the output (DC to Nyquist)
+	 */
+	public int getBinCount() {
+		return n/2+1;
+	}
+	
+	/**
+	 * Forward transform
+	 * @param re holds the n real samples as input, the real part of the n/2+1 bins as output
+	 * @param im needs n/2+1 items, holds the imaginary part of the bins as output
+	 * Bins beyond n/2 are left undefined
+	 */
+	public void forward(Transform engine, float[] re, float[] im) {
+		int m = n/2;
+		
+		// Pack real samples into a half size complex signal
+		for (int i=0; i<m; i++)
+			im[i] = re[2*i+1];
+		for (int i=1; i<m; i++)
+			re[i] = re[2*i];
+		engine.fft(re, im, log2_n-1, 0);
+		
+		// Nyquist and DC bins only depend on Z[0]
+		float a = re[0], b = im[0];
+		re[0] = 0.5f*(a+b);	im[0] = 0;
+		re[m] = 0.5f*(a-b);	im[m] = 0;
+		
+		// Split Z into even (E) and odd (O) spectra, then X[k] = (E[k] + W^k.O[k])/2 and X[m-k] = conj(E[k] - W^k.O[k])/2
+		for (int k=1; k<=m/2; k++) {
+			float zr = re[k], zi = im[k];
+			float cr = re[m-k], ci = im[m-k];
+			float er = 0.5f*(zr+cr), ei = 0.5f*(zi-ci);
+			float or = 0.5f*(zi+ci), oi = -0.5f*(zr-cr);
+			float wr = plan.getCos(k), wi = -plan.getSin(k);
+			float tr = wr*or - wi*oi, ti = wr*oi + wi*or;
+			re[k] = 0.5f*(er+tr);	im[k] = 0.5f*(ei+ti);
+			re[m-k] = 0.5f*(er-tr);	im[m-k] = -0.5f*(ei-ti);
+		}
+	}
+}
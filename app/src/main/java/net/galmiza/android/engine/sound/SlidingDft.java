@@ -0,0 +1,175 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.Arrays;
+
+/**
+ * Sliding DFT, alternative to the fft when spectra are needed at small hops
+ * All n/2+1 bins are updated in O(n) for every new sample, a spectrum is produced every hop samples
+ * Two variants:
+ *  stable (modulated sliding DFT): bins are accumulated in a fixed reference and demodulated on output,
+ *   rounding errors do not build up since no recursive rotation is applied
+ *  classic: bins are rotated every sample, damped by a factor r so that errors decay
+ * Cosine windows are applied in the frequency domain (non cosine windows are replaced by Hanning)
+ * Spectra are scaled like the output of SpectrumAnalyzer
+ */
+public class SlidingDft {
+	
+	// Constants
+	private static final float SHORT_SCALE = 1f/32768;
+	private static final double DAMPING = 1-1e-6; // r, classic variant only
+	
+	// Attributes
+	private final int n;
+	private final int hop;
+	private final boolean stable;
+	private final double[] cos; // cos(2*pi*j/n) for j in [0,n[
+	private final double[] sin; // sin(2*pi*j/n) for j in [0,n[
+	private final double[] window; // cosine terms a0..a3
+	private final double dampingN; // r^n
+	private final float[] history; // last n samples, circular
+	private final double[] xr, xi; // bin states
+	private final double[] yr, yi; // demodulated bins with symmetric margins for the window kernel
+	private int position; // index of the next sample, modulo n
+	private int phase; // samples since the last spectrum
+	
+	/**
+	 * Constructor
+	 * @param n is the frame length (power of two)
+	 * @param hop is the number of samples between two spectra
+	 */
+	public SlidingDft(int n, int hop, Window window, boolean stable) {
+		if (n < 8 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Frame length must be a power of two, got "+n);
+		if (hop < 1) throw new IllegalArgumentException("Hop size must be positive, got "+hop);
+		this.n = n;
+		this.hop = hop;
+		this.stable = stable;
+		double[] terms = window.getCosineTerms();
+		this.window = terms != null ? terms : Window.HANNING.getCosineTerms();
+		dampingN = Math.pow(DAMPING, n);
+		cos = new double[n];
+		sin = new double[n];
+		for (int j=0; j<n; j++) {
+			cos[j] = Math.cos(2*Math.PI*j/n);
+			sin[j] = Math.sin(2*Math.PI*j/n);
+		}
+		history = new float[n];
+		xr = new double[n/2+1];
+		xi = new double[n/2+1];
+		yr = new double[n/2+7];
+		yi = new double[n/2+7];
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {	return n;	}
+	public int getHop() {			return hop;	}
+	public int getBinCount() {		return n/2+1;	}
+	
+	/**
+	 * Maximum number of spectra produced by @method process for @param length samples
+	 */
+	public int getFrameCount(int length) {
+		return (length+hop-1)/hop;
+	}
+	
+	/**
+	 * Feeds @param length samples starting at @param offset
+	 * @param out receives one spectrum (n/2+1 magnitudes, or dB if @param db is set) every hop samples, one after another
+	 * @return the number of spectra written
+	 */
+	public int process(short[] buffer, int offset, int length, float[] out, boolean db) {
+		int frames = 0;
+		int bins = n/2+1;
+		int mask = n-1;
+		for (int i=offset; i<offset+length; i++) {
+			float x = buffer[i]*SHORT_SCALE;
+			double d = x - (stable ? history[position] : dampingN*history[position]);
+			history[position] = x;
+			if (stable) {
+				// y_k += d.W^(k.m), W = exp(-2i.pi/n), m = position
+				for (int k=0, j=0; k<bins; k++, j=(j+position)&mask) {
+					xr[k] += d*cos[j];
+					xi[k] -= d*sin[j];
+				}
+			} else {
+				// X_k = r.exp(2i.pi.k/n).(X_k + d)
+				for (int k=0; k<bins; k++) {
+					double a = xr[k]+d, b = xi[k];
+					xr[k] = DAMPING*(a*cos[k] - b*sin[k]);
+					xi[k] = DAMPING*(a*sin[k] + b*cos[k]);
+				}
+			}
+			position = (position+1) & mask;
+			if (++phase == hop) {
+				spectrum(out, frames*bins, db);
+				frames++;
+				phase = 0;
+			}
+		}
+		return frames;
+	}
+	
+	/**
+	 * Windowed magnitudes of the current frame
+	 */
+	private void spectrum(float[] out, int outOffset, boolean db) {
+		int bins = n/2+1;
+		int mask = n-1;
+		
+		// Frame ordered bins (demodulation for the stable variant), 3 bins of margin on both sides
+		for (int k=0, j=0; k<bins; k++, j=(j+position)&mask) {
+			if (stable) {
+				// X_k = y_k.exp(2i.pi.k.m/n), m = index following the newest sample
+				yr[k+3] = xr[k]*cos[j] - xi[k]*sin[j];
+				yi[k+3] = xr[k]*sin[j] + xi[k]*cos[j];
+			} else {
+				yr[k+3] = xr[k];
+				yi[k+3] = xi[k];
+			}
+		}
+		
+		// Real input spectrum is conjugate symmetric around DC and Nyquist
+		for (int m=1; m<=3; m++) {
+			yr[3-m] = yr[3+m];			yi[3-m] = -yi[3+m];
+			yr[bins+2+m] = yr[bins+2-m];	yi[bins+2+m] = -yi[bins+2-m];
+		}
+		
+		// Window kernel a0.X_k - a1/2.(X_k-1 + X_k+1) + a2/2.(X_k-2 + X_k+2) - a3/2.(X_k-3 + X_k+3)
+		double a0 = window[0], a1 = window[1]/2, a2 = window[2]/2, a3 = window[3]/2;
+		for (int k=0; k<bins; k++) {
+			int c = k+3;
+			double r = a0*yr[c] - a1*(yr[c-1]+yr[c+1]) + a2*(yr[c-2]+yr[c+2]) - a3*(yr[c-3]+yr[c+3]);
+			double i = a0*yi[c] - a1*(yi[c-1]+yi[c+1]) + a2*(yi[c-2]+yi[c+2]) - a3*(yi[c-3]+yi[c+3]);
+			float m = (float) (Math.sqrt(r*r + i*i)/n);
+			out[outOffset+k] = db ? Decibel.fromMagnitude(m) : m;
+		}
+	}
+	
+	/**
+	 * Clears the history and the bins
+	 */
+	public void reset() {
+		Arrays.fill(history, 0);
+		Arrays.fill(xr, 0);
+		Arrays.fill(xi, 0);
+		position = 0;
+		phase = 0;
+	}
+}
@@ -1,6 +1,6 @@
 package net.galmiza.android.engine.sound;
 
-public class SoundEngine {
+public class SoundEngine implements Transform {
     static {
         System.loadLibrary("sound-engine");
     }
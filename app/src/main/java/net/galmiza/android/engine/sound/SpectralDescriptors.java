@@ -0,0 +1,135 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Per frame spectral descriptors, computed in one pass over the magnitudes
+ * Centroid (mean frequency, weighted by magnitude), spread (standard deviation around the centroid),
+ * flatness (geometric over arithmetic mean of the power), rolloff (frequency below which ROLLOFF of the magnitude lies)
+ * and flux (norm of the magnitude increase since the previous frame)
+ * Results are written to a fixed capacity ring history, the arrays are exposed as is so that readers do not copy them
+ * Only one thread may call @method process, readers on other threads may see a frame being written
+ */
+public class SpectralDescriptors {
+	
+	// Constants
+	public static final float ROLLOFF = 0.85f;
+	private static final double LN_10_OVER_10 = Math.log(10)/10; // dB of magnitudes to natural log of power
+	
+	// Attributes
+	private final int bins;
+	private final float minFrequency; // frequency of the first bin
+	private final float binWidth;
+	private final float[] previous; // magnitudes of the previous frame
+	private final float[] cumulative; // cumulative magnitude of the current frame
+	private final float[] centroid, spread, flatness, rolloff, flux; // ring history
+	private volatile int newest = -1; // index of the newest frame in the history
+	private volatile int count; // frames in the history, up to the capacity
+	private boolean first = true;
+	
+	/**
+	 * Constructor
+	 * @param minFrequency and @param binWidth give the frequency of bin k: minFrequency+k.binWidth
+	 * @param capacity is the number of frames kept in the history
+	 */
+	public SpectralDescriptors(int bins, float minFrequency, float binWidth, int capacity) {
+		if (bins < 1 || capacity < 1)
+			throw new IllegalArgumentException("Invalid descriptors of "+bins+" bins and "+capacity+" frames");
+		this.bins = bins;
+		this.minFrequency = minFrequency;
+		this.binWidth = binWidth;
+		previous = new float[bins];
+		cumulative = new float[bins];
+		centroid = new float[capacity];
+		spread = new float[capacity];
+		flatness = new float[capacity];
+		rolloff = new float[capacity];
+		flux = new float[capacity];
+	}
+	
+	/**
+	 * Simple gets
+	 * History arrays are rings of getCapacity() frames, the newest one is at getNewest()
+	 */
+	public int getCapacity() {			return centroid.length;	}
+	public int getCount() {				return count;	}
+	public int getNewest() {			return newest;	}
+	public float[] getCentroids() {		return centroid;	}
+	public float[] getSpreads() {		return spread;	}
+	public float[] getFlatnesses() {	return flatness;	}
+	public float[] getRolloffs() {		return rolloff;	}
+	public float[] getFluxes() {		return flux;	}
+	
+	/**
+	 * Index in the history arrays of the frame computed @param age frames ago (0 for the newest)
+	 */
+	public int getIndex(int age) {
+		int capacity = centroid.length;
+		return ((newest-age) % capacity + capacity) % capacity;
+	}
+	
+	/**
+	 * Clears the history
+	 */
+	public void reset() {
+		newest = -1;
+		count = 0;
+		first = true;
+	}
+	
+	/**
+	 * Computes the descriptors of a frame of magnitudes starting at @param offset and appends them to the history
+	 */
+	public void process(float[] magnitudes, int offset) {
+		
+		// Single pass over the bins
+		double sum = 0, weighted = 0, squared = 0, logPower = 0, power = 0, increase = 0;
+		for (int k=0; k<bins; k++) {
+			float m = magnitudes[offset+k];
+			float f = minFrequency + k*binWidth;
+			sum += m;
+			weighted += m*f;
+			squared += m*f*f;
+			power += m*m;
+			logPower += Decibel.fromMagnitude(m); // floored, so silent bins do not zero the geometric mean
+			float d = m-previous[k];
+			if (d > 0) increase += d*d;
+			previous[k] = m;
+			cumulative[k] = (float) sum;
+		}
+		
+		// Rolloff, first bin reaching the fraction of the total
+		float target = (float) (ROLLOFF*sum);
+		int low = 0, high = bins-1;
+		while (low < high) {
+			int middle = (low+high) >>> 1;
+			if (cumulative[middle] < target)	low = middle+1;
+			else								high = middle;
+		}
+		
+		// Append
+		int index = (newest+1) % centroid.length;
+		float mean = sum > 0 ? (float) (weighted/sum) : 0;
+		centroid[index] = mean;
+		spread[index] = sum > 0 ? (float) Math.sqrt(Math.max(0, squared/sum - mean*mean)) : 0;
+		flatness[index] = power > 0 ? (float) (Math.exp(logPower/bins*LN_10_OVER_10)/(power/bins)) : 0;
+		rolloff[index] = minFrequency + low*binWidth;
+		flux[index] = first ? 0 : (float) Math.sqrt(increase);
+		first = false;
+		newest = index;
+		if (count < centroid.length) count++;
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Frame analysis in a single call
+ * Converts 16 bits samples, applies the window, computes the real fft and the magnitudes (optionally in dB)
+ * Conversion, windowing and magnitudes run in Java so that a native engine is only crossed once per frame (fft)
+ * Samples are read from heap arrays or from (direct) ShortBuffer without intermediate copy
+ * A fixed-point analyzer transforms the 16 bits samples with FixedPointFft, only the bins are converted to float
+ * Buffers are allocated once in the constructor, an instance must only be used by one thread at a time
+ */
+public class SpectrumAnalyzer {
+	
+	// Constants
+	private static final float SHORT_SCALE = 1f/32768;
+	
+	// Attributes
+	private final Transform engine;
+	private final RealFft realFft;
+	private final float[] window;
+	private final FixedPointFft fixedPointFft; // only set in fixed-point
+	private final float[] re; // n samples, then n/2+1 bins
+	private final float[] im;
+	private final int n;
+	private ConstantQ constantQ;
+	
+	/**
+	 * Constructor
+	 * @param n is the frame length (power of two)
+	 */
+	public SpectrumAnalyzer(Transform engine, int n, Window window) {
+		this.engine = engine;
+		this.n = n;
+		this.realFft = new RealFft(n);
+		this.window = WindowCache.getShared().get(window, n);
+		this.fixedPointFft = null;
+		re = new float[n];
+		im = new float[n/2+1];
+	}
+	
+	/**
+	 * Fixed-point constructor
+	 * @param n is the frame length (power of two, at least 4)
+	 */
+	public SpectrumAnalyzer(int n, Window window) {
+		this.engine = null;
+		this.n = n;
+		this.realFft = null;
+		this.window = null;
+		this.fixedPointFft = new FixedPointFft(n, window);
+		re = new float[n/2+1];
+		im = new float[n/2+1];
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {	return n;	}
+	public int getBinCount() {		return constantQ == null ? n/2+1 : constantQ.getBinCount();	}
+	
+	/**
+	 * Outputs constant-Q bins instead of fft bins, null restores the fft bins
+	 * The kernels of @param constantQ carry their own window, the analyzer should use Window.RECTANGULAR
+	 */
+	public void setConstantQ(ConstantQ constantQ) {
+		if (constantQ != null && constantQ.getFftSize() != n)
+			throw new IllegalArgumentException("Constant-Q kernels are built for "+constantQ.getFftSize()+" points, frame length is "+n);
+		this.constantQ = constantQ;
+	}
+	
+	/**
+	 * Analyzes a frame of n samples starting at @param offset
+	 * @param out receives the n/2+1 magnitudes (from DC to Nyquist, or the constant-Q bins if set) from @param outOffset, or 20.log10(magnitude) if @param db is set
+	 * Decibels are computed with the fast approximation of Decibel (floored at Decibel.FLOOR)
+	 */
+	public void analyze(short[] frame, int offset, float[] out, int outOffset, boolean db) {
+		if (fixedPointFft != null) {
+			fixedPointFft.forward(frame, offset, re, im);
+		} else {
+			
+			// Conversion and windowing
+			for (int i=0; i<n; i++)
+				re[i] = frame[offset+i]*SHORT_SCALE*window[i];
+			realFft.forward(engine, re, im);
+		}
+		spectrum(out, outOffset, db);
+	}
+	public void analyze(ShortBuffer frame, int offset, float[] out, int outOffset, boolean db) {
+		if (fixedPointFft != null) {
+			fixedPointFft.forward(frame, offset, re, im);
+		} else {
+			
+			// Conversion and windowing, absolute reads leave the buffer position untouched
+			for (int i=0; i<n; i++)
+				re[i] = frame.get(offset+i)*SHORT_SCALE*window[i];
+			realFft.forward(engine, re, im);
+		}
+		spectrum(out, outOffset, db);
+	}
+	
+	/**
+	 * Magnitudes of the bins
+	 */
+	private void spectrum(float[] out, int outOffset, boolean db) {
+		if (constantQ != null) {
+			constantQ.apply(re, im, out, outOffset, db);
+			return;
+		}
+		
+		// Magnitudes
+		int bins = n/2+1;
+		for (int k=0; k<bins; k++) {
+			float m = (float) Math.sqrt(re[k]*re[k] + im[k]*im[k]);
+			out[outOffset+k] = db ? Decibel.fromMagnitude(m) : m;
+		}
+	}
+	public void analyze(short[] frame, int offset, float[] out, boolean db) {
+		analyze(frame, offset, out, 0, db);
+	}
+	public void analyze(short[] frame, float[] out, boolean db) {
+		analyze(frame, 0, out, 0, db);
+	}
+	
+	/**
+	 * Number of frames analyzed by @method analyzeBatch for a buffer of @param length samples
+	 */
+	public int getFrameCount(int length, int hop) {
+		return length < n ? 0 : (length-n)/hop + 1;
+	}
+	
+	/**
+	 * Analyzes all the frames of a buffer, frame i starting at offset+i*hop
+	 * @param out receives the spectra one after another (frame i at outOffset+i*getBinCount()), it needs getFrameCount(length, hop)*getBinCount() items
+	 * @return the number of frames analyzed
+	 */
+	public int analyzeBatch(short[] buffer, int offset, int length, int hop, float[] out, int outOffset, boolean db) {
+		if (hop < 1) throw new IllegalArgumentException("Hop size must be positive, got "+hop);
+		int frames = getFrameCount(length, hop);
+		int bins = getBinCount();
+		for (int f=0; f<frames; f++)
+			analyze(buffer, offset+f*hop, out, outOffset+f*bins, db);
+		return frames;
+	}
+	public int analyzeBatch(ShortBuffer buffer, int offset, int length, int hop, float[] out, int outOffset, boolean db) {
+		if (hop < 1) throw new IllegalArgumentException("Hop size must be positive, got "+hop);
+		int frames = getFrameCount(length, hop);
+		int bins = getBinCount();
+		for (int f=0; f<frames; f++)
+			analyze(buffer, offset+f*hop, out, outOffset+f*bins, db);
+		return frames;
+	}
+	public int analyzeBatch(short[] buffer, int offset, int length, int hop, float[] out, boolean db) {
+		return analyzeBatch(buffer, offset, length, hop, out, 0, db);
+	}
+	public int analyzeBatch(ShortBuffer buffer, int offset, int length, int hop, float[] out, boolean db) {
+		return analyzeBatch(buffer, offset, length, hop, out, 0, db);
+	}
+}
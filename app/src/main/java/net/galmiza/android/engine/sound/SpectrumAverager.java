@@ -0,0 +1,147 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.Arrays;
+
+/**
+ * Averages successive spectra to estimate the power spectral density
+ * Linear mode returns the mean power of blocks of frames (Welch), exponential mode a running mean
+ * and peak-hold mode the maximum power seen since the last reset
+ * Frames are accumulated in place in one array of powers, no allocation happens per frame
+ */
+public class SpectrumAverager {
+	
+	/**
+	 * Averaging modes, names match the values of the averaging preference
+	 */
+	public enum Mode {
+		NONE("None"),
+		LINEAR("Linear"),
+		EXPONENTIAL("Exponential"),
+		PEAK_HOLD("Peak hold");
+		
+		// Attributes
+		private final String name;
+		
+		Mode(String name) {
+			this.name = name;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the mode matching the preference value, none if unknown
+		 */
+		public static Mode fromName(String name) {
+			for (Mode m : values())
+				if (m.name.equals(name)) return m;
+			return NONE;
+		}
+	}
+	
+	// Attributes
+	private final Mode mode;
+	private final int bins;
+	private final int frames;
+	private final float alpha; // weight of the new frame in exponential mode
+	private final float[] accumulator; // sum of powers (linear), mean power (exponential), maximum power (peak-hold) or last power (none)
+	private final float[] estimate; // mean power of the last complete block in linear mode, accumulator otherwise
+	private int count; // frames in the accumulator
+	
+	/**
+	 * Constructor
+	 * @param frames is the block length in linear mode, and the equivalent length of the running mean in exponential mode (alpha=2/(frames+1))
+	 */
+	public SpectrumAverager(int bins, Mode mode, int frames) {
+		if (frames < 1) throw new IllegalArgumentException("Averaging length must be positive, got "+frames);
+		this.bins = bins;
+		this.mode = mode;
+		this.frames = frames;
+		alpha = 2f/(frames+1);
+		accumulator = new float[bins];
+		estimate = mode == Mode.LINEAR ? new float[bins] : accumulator;
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public Mode getMode() {			return mode;	}
+	public int getBinCount() {		return bins;	}
+	public int getFrameCount() {	return frames;	}
+	
+	/**
+	 * Clears the accumulated frames
+	 */
+	public void reset() {
+		Arrays.fill(accumulator, 0);
+		Arrays.fill(estimate, 0);
+		count = 0;
+	}
+	
+	/**
+	 * Accumulates a frame of magnitudes starting at @param offset
+	 * @return true if a new estimate is available (every frame except in linear mode, where it is once per block)
+	 */
+	public boolean add(float[] magnitudes, int offset) {
+		switch (mode) {
+		case LINEAR:
+			for (int k=0; k<bins; k++)
+				accumulator[k] += magnitudes[offset+k]*magnitudes[offset+k];
+			if (++count < frames) return false;
+			float scale = 1f/count;
+			for (int k=0; k<bins; k++) {
+				estimate[k] = accumulator[k]*scale;
+				accumulator[k] = 0;
+			}
+			count = 0;
+			return true;
+		case EXPONENTIAL:
+			for (int k=0; k<bins; k++) {
+				float p = magnitudes[offset+k]*magnitudes[offset+k];
+				accumulator[k] = count == 0 ? p : accumulator[k] + alpha*(p-accumulator[k]);
+			}
+			count = 1;
+			return true;
+		case PEAK_HOLD:
+			for (int k=0; k<bins; k++)
+				accumulator[k] = Math.max(accumulator[k], magnitudes[offset+k]*magnitudes[offset+k]);
+			return true;
+		default:
+			for (int k=0; k<bins; k++)
+				accumulator[k] = magnitudes[offset+k]*magnitudes[offset+k];
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the last estimate as magnitudes (square root of the power), same scale as the input
+	 */
+	public void getMagnitudes(float[] out, int offset) {
+		for (int k=0; k<bins; k++)
+			out[offset+k] = (float) Math.sqrt(estimate[k]);
+	}
+	
+	/**
+	 * Returns the last estimate in dB (see Decibel)
+	 */
+	public void getDecibels(float[] out, int offset) {
+		for (int k=0; k<bins; k++)
+			out[offset+k] = Decibel.fromMagnitude((float) Math.sqrt(estimate[k]));
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Cuts a stream of samples into frames of n samples, one every hop samples (hop from 1 to n)
+ * Samples are written once into a ring followed by a mirror of its first n-1 samples,
+ * so that every frame is contiguous in the buffer and is read in place, without any copy
+ * A frame is read between @method next and the following @method write
+ */
+public class StreamFramer {
+	
+	// Constants
+	public static final float MAX_OVERLAP = 0.95f;
+	
+	// Attributes
+	private final int n;
+	private final int hop;
+	private final int capacity; // samples in the ring, before the mirror
+	private final short[] ring;
+	private long written; // stream position of the next written sample
+	private long next; // stream position of the first sample of the next frame
+	
+	/**
+	 * Constructor
+	 * @param maxWrite is the largest number of samples passed to @method write at once
+	 */
+	public StreamFramer(int n, int hop, int maxWrite) {
+		if (n < 1 || hop < 1 || hop > n || maxWrite < 1)
+			throw new IllegalArgumentException("Invalid framing of "+n+" samples every "+hop+" samples");
+		this.n = n;
+		this.hop = hop;
+		capacity = n+maxWrite;
+		ring = new short[capacity+n-1];
+	}
+	
+	/**
+	 * Hop of frames of @param n samples overlapping by @param overlap (0 to MAX_OVERLAP)
+	 */
+	public static int getHop(int n, float overlap) {
+		overlap = Math.max(0, Math.min(MAX_OVERLAP, overlap));
+		return Math.max(1, Math.round(n*(1-overlap)));
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getFrameLength() {	return n;	}
+	public int getHop() {			return hop;	}
+	public short[] getBuffer() {	return ring;	}
+	
+	/**
+	 * Largest number of frames available after writing @param length samples, once all previous frames were read
+	 */
+	public int getMaxFrameCount(int length) {
+		return length < 1 ? 0 : (length-1)/hop + 1;
+	}
+	
+	/**
+	 * Number of frames that can be read
+	 */
+	public int getFrameCount() {
+		long available = written-next;
+		return available < n ? 0 : (int) ((available-n)/hop + 1);
+	}
+	
+	/**
+	 * Number of frames that follow each other in getBuffer(), every hop samples from the offset returned by @method next
+	 * Frames starting after the end of the ring are not counted, they are read from its beginning
+	 */
+	public int getContiguousFrameCount() {
+		int frames = getFrameCount();
+		if (frames == 0) return 0;
+		int offset = (int) (next % capacity);
+		return Math.min(frames, (capacity-1-offset)/hop + 1);
+	}
+	
+	/**
+	 * Appends @param length samples of @param in, starting at @param offset
+	 * Frames that are not read before the write may be overwritten
+	 */
+	public void write(short[] in, int offset, int length) {
+		if (written-next+length > capacity)
+			throw new IllegalArgumentException("Cannot write "+length+" samples, the ring holds "+(capacity-n)+" samples besides a frame");
+		int position = (int) (written % capacity);
+		int first = Math.min(length, capacity-position);
+		put(in, offset, position, first);
+		put(in, offset+first, 0, length-first);
+		written += length;
+	}
+	public void write(ShortBuffer in, int offset, int length) {
+		if (written-next+length > capacity)
+			throw new IllegalArgumentException("Cannot write "+length+" samples, the ring holds "+(capacity-n)+" samples besides a frame");
+		int position = (int) (written % capacity);
+		int first = Math.min(length, capacity-position);
+		in.position(offset);
+		put(in, position, first);
+		put(in, 0, length-first);
+		written += length;
+	}
+	private void put(short[] in, int offset, int position, int length) {
+		System.arraycopy(in, offset, ring, position, length);
+		int mirrored = Math.min(length, n-1-position);
+		if (mirrored > 0)
+			System.arraycopy(in, offset, ring, capacity+position, mirrored);
+	}
+	private void put(ShortBuffer in, int position, int length) {
+		int mirrored = Math.min(length, n-1-position);
+		if (mirrored > 0) {
+			in.mark();
+			in.get(ring, capacity+position, mirrored);
+			in.reset();
+		}
+		in.get(ring, position, length);
+	}
+	
+	/**
+	 * Moves to the next frame
+	 * @return the offset in getBuffer() of its first sample, or -1 if no full frame is available
+	 */
+	public int next() {
+		return next(1);
+	}
+	
+	/**
+	 * Moves past @param frames frames (at most getContiguousFrameCount()), read in a single batch
+	 * @return the offset in getBuffer() of the first sample of the first frame, or -1 if they are not available
+	 */
+	public int next(int frames) {
+		if (frames < 1 || frames > getContiguousFrameCount()) return -1;
+		int offset = (int) (next % capacity);
+		next += (long) frames*hop;
+		return offset;
+	}
+	
+	/**
+	 * Skips the available frames, for readers that only need the latest samples
+	 * @return the offset in getBuffer() of the last n written samples, or -1 if fewer were written
+	 */
+	public int skipToLatest() {
+		next += (long) getFrameCount()*hop;
+		return written < n ? -1 : (int) ((written-n) % capacity);
+	}
+	
+	/**
+	 * Clears the stream, the next frame starts with the next written sample
+	 */
+	public void reset() {
+		written = 0;
+		next = 0;
+	}
+}
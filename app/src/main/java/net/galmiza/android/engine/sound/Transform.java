@@ -0,0 +1,50 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Sound processing primitives used by the spectrogram
+ * Implemented by the native SoundEngine (JNI) and by JavaSoundEngine (pure Java)
+ * so that the processing chain can run, be benchmarked and be tested off-device
+ * Arrays are processed in place on their first n items (log2_n for the fft)
+ */
+public interface Transform {
+	
+	// Fourier transform (direction 0 is forward, any other value is inverse)
+	void initFSin();
+	void fft(float[] re, float[] im, int log2_n, int direction);
+	
+	// Complex representations
+	void toPolar(float[] re, float[] im, int n);
+	void toCartesian(float[] re, float[] im, int n);
+	
+	// Sample conversion
+	void shortToFloat(short[] in, float[] out, int n);
+	void floatToShort(float[] in, short[] out, int n);
+	void clearShort(short[] x, int n);
+	void clearFloat(float[] x, int n);
+	
+	// Windowing functions
+	void windowRectangular(float[] x, int n);
+	void windowTriangular(float[] x, int n);
+	void windowWelch(float[] x, int n);
+	void windowHanning(float[] x, int n);
+	void windowHamming(float[] x, int n);
+	void windowBlackman(float[] x, int n);
+	void windowNuttall(float[] x, int n);
+	void windowBlackmanNuttall(float[] x, int n);
+	void windowBlackmanHarris(float[] x, int n);
+}
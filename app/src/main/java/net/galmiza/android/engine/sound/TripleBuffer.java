@@ -0,0 +1,78 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free exchange of the latest frame between one producer thread and one consumer thread
+ * The producer fills the back buffer and publishes it, the consumer picks the latest published buffer up as its front buffer.
+ * The third (middle) buffer is swapped with a single atomic operation on each side, so that neither side waits or allocates,
+ * the consumer always reads a complete frame and frames published in between are skipped
+ */
+public class TripleBuffer<T> {
+	
+	// Constants
+	private static final int INDEX = 3;
+	private static final int FRESH = 4; // set when the middle buffer was published and not yet picked up
+	
+	// Attributes
+	private final T[] buffers;
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0; // only used by the producer
+	private int front = 2; // only used by the consumer
+	
+	/**
+	 * Constructor
+	 * @param buffers are the 3 preallocated buffers
+	 */
+	public TripleBuffer(T[] buffers) {
+		if (buffers.length != 3)
+			throw new IllegalArgumentException("Triple buffer needs 3 buffers, got "+buffers.length);
+		this.buffers = buffers;
+	}
+	
+	/**
+	 * Producer side, buffer to fill
+	 */
+	public T getBack() {
+		return buffers[back];
+	}
+	
+	/**
+	 * Producer side, makes the back buffer the latest frame
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+	
+	/**
+	 * Consumer side, picks the latest frame up if one was published since the last call
+	 * @return true if the front buffer changed
+	 */
+	public boolean update() {
+		if ((middle.get() & FRESH) == 0) return false;
+		front = middle.getAndSet(front) & INDEX;
+		return true;
+	}
+	
+	/**
+	 * Consumer side, latest frame picked up by @method update
+	 */
+	public T getFront() {
+		return buffers[front];
+	}
+}
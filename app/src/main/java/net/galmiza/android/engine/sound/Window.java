@@ -0,0 +1,93 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Windowing functions used to reduce spectrum leakage
+ * Names match the values of the window_type preference
+ */
+public enum Window {
+	RECTANGULAR("Rectangular"),
+	TRIANGULAR("Triangular"),
+	WELCH("Welch"),
+	HANNING("Hanning"),
+	HAMMING("Hamming"),
+	BLACKMAN("Blackman"),
+	NUTTALL("Nuttall"),
+	BLACKMAN_NUTTALL("Blackman-Nuttall"),
+	BLACKMAN_HARRIS("Blackman-Harris");
+	
+	// Attributes
+	private final String name;
+	
+	Window(String name) {
+		this.name = name;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the window matching the preference value, rectangular if unknown
+	 */
+	public static Window fromName(String name) {
+		for (Window w : values())
+			if (w.name.equals(name)) return w;
+		return RECTANGULAR;
+	}
+	
+	/**
+	 * Computes the n coefficients of the window
+	 * Prefer WindowCache to avoid recomputing them
+	 */
+	public float[] createCoefficients(int n) {
+		float[] c = new float[n];
+		double[] terms = getCosineTerms();
+		for (int i=0; i<n; i++)
+			c[i] = n < 2 ? 1 : coefficient(i, n, terms);
+		return c;
+	}
+	private float coefficient(int i, int n, double[] terms) {
+		float h = (n-1)/2f;
+		switch (this) {
+		case TRIANGULAR:	return 1 - Math.abs((i-h)/(n/2f));
+		case WELCH:			return 1 - ((i-h)/h)*((i-h)/h);
+		default:			return cosine(i, n, terms);
+		}
+	}
+	
+	/**
+	 * Terms a0..a3 of windows defined as a generalized cosine a0 - a1.cos(t) + a2.cos(2t) - a3.cos(3t)
+	 * @return null for windows that are not a sum of cosines
+	 */
+	public double[] getCosineTerms() {
+		switch (this) {
+		case RECTANGULAR:		return new double[] { 1, 0, 0, 0 };
+		case HANNING:			return new double[] { 0.5, 0.5, 0, 0 };
+		case HAMMING:			return new double[] { 0.54, 0.46, 0, 0 };
+		case BLACKMAN:			return new double[] { 0.42, 0.5, 0.08, 0 };
+		case NUTTALL:			return new double[] { 0.355768, 0.487396, 0.144232, 0.012604 };
+		case BLACKMAN_NUTTALL:	return new double[] { 0.3635819, 0.4891775, 0.1365995, 0.0106411 };
+		case BLACKMAN_HARRIS:	return new double[] { 0.35875, 0.48829, 0.14128, 0.01168 };
+		default:				return null;
+		}
+	}
+	private static float cosine(int i, int n, double[] a) {
+		double t = 2*Math.PI*i/(n-1);
+		return (float) (a[0] - a[1]*Math.cos(t) + a[2]*Math.cos(2*t) - a[3]*Math.cos(3*t));
+	}
+}
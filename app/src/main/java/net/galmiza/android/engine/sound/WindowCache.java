@@ -0,0 +1,86 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Least recently used cache of window coefficients, per (window, size)
+ * Applying a window is then a single multiplication pass, without any trigonometric evaluation
+ * Lookups scan the few cached tables, so that the per frame path does not allocate any key
+ */
+public class WindowCache {
+	
+	// Constants
+	public static final int DEFAULT_CAPACITY = 4;
+	private static final float SHORT_SCALE = 1f/32768;
+	
+	// Shared instance
+	private static final WindowCache shared = new WindowCache(DEFAULT_CAPACITY);
+	public static WindowCache getShared() {
+		return shared;
+	}
+	
+	// Attributes
+	private final Window[] windows; // window of each cached table, null if the entry is free
+	private final float[][] coefficients; // the size of the window is the length of the table
+	private final long[] uses; // time of the last use of each table
+	private long time;
+	
+	/**
+	 * Constructor
+	 * @param capacity is the maximum number of coefficient tables kept in memory
+	 */
+	public WindowCache(int capacity) {
+		windows = new Window[capacity];
+		coefficients = new float[capacity][];
+		uses = new long[capacity];
+	}
+	
+	/**
+	 * Returns the n coefficients of the window, computes them if needed
+	 * The returned array must not be modified
+	 */
+	public synchronized float[] get(Window window, int n) {
+		time++;
+		int oldest = 0;
+		for (int i=0; i<windows.length; i++) {
+			if (windows[i] == window && coefficients[i].length == n) {
+				uses[i] = time;
+				return coefficients[i];
+			}
+			if (uses[i] < uses[oldest]) oldest = i;
+		}
+		windows[oldest] = window;
+		coefficients[oldest] = window.createCoefficients(n);
+		uses[oldest] = time;
+		return coefficients[oldest];
+	}
+	
+	/**
+	 * Applies coefficients to float samples in place
+	 */
+	public static void apply(float[] x, float[] coefficients, int n) {
+		for (int i=0; i<n; i++)
+			x[i] *= coefficients[i];
+	}
+	
+	/**
+	 * Converts 16 bits samples to [-1,1[ and applies coefficients in a single pass
+	 */
+	public static void apply(short[] in, float[] out, float[] coefficients, int n) {
+		for (int i=0; i<n; i++)
+			out[i] = in[i]*SHORT_SCALE*coefficients[i];
+	}
+}
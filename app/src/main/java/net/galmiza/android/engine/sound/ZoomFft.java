@@ -0,0 +1,196 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.engine.sound;
+
+/**
+ * Zoom fft, high resolution analysis of a narrow band
+ * Samples are mixed down so that the center of the band moves to 0 Hz, low pass filtered,
+ * decimated and analyzed by a small complex fft
+ * Frequency resolution is samplingRate/(decimation*n) instead of samplingRate/n
+ * Spectra are produced every n/2 decimated samples, limited to the bins of the band
+ * Magnitudes are scaled like the output of SpectrumAnalyzer
+ */
+public class ZoomFft {
+	
+	// Constants
+	private static final float SHORT_SCALE = 1f/32768;
+	private static final int TAPS_PER_DECIMATION = 12; // low pass filter length, as a multiple of the decimation
+	
+	// Attributes
+	private final Transform engine;
+	private final int n;
+	private final int log2_n;
+	private final int decimation;
+	private final float decimatedRate;
+	private final float[] window;
+	private final float[] taps; // low pass filter
+	private final float[] zr, zi; // mixed samples, circular, stored twice so that the filter reads contiguous items
+	private final float[] fr, fi; // decimated samples, circular
+	private final float[] re, im; // fft buffers
+	private final int firstBin; // index of the first bin of the band in the centered spectrum
+	private final int bins;
+	private final float minFrequency, maxFrequency; // frequencies of the first and last output bins
+	private double oscRe = 1, oscIm = 0; // local oscillator exp(-2i.pi.fc.t/fs)
+	private final double stepRe, stepIm;
+	private int mixPosition; // next index in zr/zi
+	private int decimationPhase;
+	private int framePosition; // next index in fr/fi
+	private int frameCount; // decimated samples since the last spectrum
+	
+	/**
+	 * Constructor
+	 * @param low and @param high are the bounds of the band in Hz
+	 * @param n is the size of the fft run on decimated samples (power of two)
+	 */
+	public ZoomFft(Transform engine, int samplingRate, float low, float high, int n, Window window) {
+		if (!(low >= 0 && high > low && high <= samplingRate/2f))
+			throw new IllegalArgumentException("Invalid band "+low+"-"+high+" Hz");
+		if (n < 2 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("Fft size must be a power of two, got "+n);
+		this.engine = engine;
+		this.n = n;
+		this.log2_n = Integer.numberOfTrailingZeros(n);
+		
+		// Complex decimated rate is twice the bandwidth, leaving room for the filter transition
+		float center = (low+high)/2;
+		float bandwidth = high-low;
+		decimation = Math.max(1, (int) (samplingRate/(2*bandwidth)));
+		decimatedRate = (float) samplingRate/decimation;
+		
+		// Low pass filter (windowed sinc), cutoff at half the decimated rate
+		// Passes the band (up to bandwidth/2) and rejects what would alias into it (beyond decimatedRate-bandwidth/2)
+		int length = TAPS_PER_DECIMATION*decimation+1;
+		taps = new float[length];
+		float[] blackman = WindowCache.getShared().get(Window.BLACKMAN, length);
+		double cutoff = decimatedRate/2/samplingRate;
+		double sum = 0;
+		for (int j=0; j<length; j++) {
+			double t = j-(length-1)/2.0;
+			double sinc = t == 0 ? 2*cutoff : Math.sin(2*Math.PI*cutoff*t)/(Math.PI*t);
+			taps[j] = (float) (sinc*blackman[j]);
+			sum += taps[j];
+		}
+		for (int j=0; j<length; j++)
+			taps[j] /= sum;
+		
+		// Local oscillator
+		stepRe = Math.cos(2*Math.PI*center/samplingRate);
+		stepIm = -Math.sin(2*Math.PI*center/samplingRate);
+		
+		// Buffers
+		this.window = WindowCache.getShared().get(window, n);
+		zr = new float[2*length];
+		zi = new float[2*length];
+		fr = new float[n];
+		fi = new float[n];
+		re = new float[n];
+		im = new float[n];
+		
+		// Bins of the band, centered spectrum covers [center-rate/2, center+rate/2[
+		float resolution = decimatedRate/n;
+		firstBin = n/2 + (int) Math.ceil((low-center)/resolution);
+		int lastBin = n/2 + (int) Math.floor((high-center)/resolution);
+		bins = lastBin-firstBin+1;
+		minFrequency = center + (firstBin-n/2)*resolution;
+		maxFrequency = center + (lastBin-n/2)*resolution;
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public int getBinCount() {			return bins;	}
+	public int getDecimation() {		return decimation;	}
+	public float getMinFrequency() {	return minFrequency;	}
+	public float getMaxFrequency() {	return maxFrequency;	}
+	
+	/**
+	 * Maximum number of spectra produced by @method process for @param length samples
+	 */
+	public int getFrameCount(int length) {
+		return (length/decimation+1)/(n/2)+1;
+	}
+	
+	/**
+	 * Feeds @param length samples starting at @param offset
+	 * @param out receives one spectrum (getBinCount() magnitudes, or dB if @param db is set) every n/2 decimated samples
+	 * @return the number of spectra written
+	 */
+	public int process(short[] buffer, int offset, int length, float[] out, boolean db) {
+		int frames = 0;
+		int taps = this.taps.length;
+		for (int i=offset; i<offset+length; i++) {
+			
+			// Mix down
+			float x = buffer[i]*SHORT_SCALE;
+			float mr = (float) (x*oscRe), mi = (float) (x*oscIm);
+			zr[mixPosition] = zr[mixPosition+taps] = mr;
+			zi[mixPosition] = zi[mixPosition+taps] = mi;
+			mixPosition = (mixPosition+1) % taps;
+			double r = oscRe*stepRe - oscIm*stepIm;
+			oscIm = oscRe*stepIm + oscIm*stepRe;
+			oscRe = r;
+			
+			// Filter and decimate, only the kept samples are filtered
+			if (++decimationPhase < decimation) continue;
+			decimationPhase = 0;
+			renormalize();
+			float yr = 0, yi = 0;
+			for (int j=0; j<taps; j++) {
+				yr += this.taps[j]*zr[mixPosition+j];
+				yi += this.taps[j]*zi[mixPosition+j];
+			}
+			fr[framePosition] = yr;
+			fi[framePosition] = yi;
+			framePosition = (framePosition+1) & (n-1);
+			
+			// Spectrum every half frame
+			if (++frameCount == n/2) {
+				frameCount = 0;
+				spectrum(out, frames*bins, db);
+				frames++;
+			}
+		}
+		return frames;
+	}
+	
+	/**
+	 * Keeps the local oscillator on the unit circle
+	 */
+	private void renormalize() {
+		double g = 1/Math.sqrt(oscRe*oscRe + oscIm*oscIm);
+		oscRe *= g;
+		oscIm *= g;
+	}
+	
+	/**
+	 * Windowed complex fft of the last n decimated samples, restricted to the band
+	 */
+	private void spectrum(float[] out, int outOffset, boolean db) {
+		for (int i=0; i<n; i++) {
+			int j = (framePosition+i) & (n-1);
+			re[i] = fr[j]*window[i];
+			im[i] = fi[j]*window[i];
+		}
+		engine.fft(re, im, log2_n, 0);
+		
+		// Bin k of the centered spectrum is bin k-n/2 (modulo n) of the fft
+		for (int b=0; b<bins; b++) {
+			int k = (firstBin+b+n/2) & (n-1);
+			float m = (float) Math.sqrt(re[k]*re[k] + im[k]*im[k]);
+			out[outOffset+b] = db ? Decibel.fromMagnitude(m) : m;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Spectrogram Android application
+ * Copyright (c) 2013 Guillaume Adam  http://www.galmiza.net/
+
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the use of this software.
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it freely,
+ * subject to the following restrictions:
+
+ * 1. The origin of this software must not be misrepresented; you must not claim that you wrote the original software. If you use this software in a product, an acknowledgment in the product documentation would be appreciated but is not required.
+ * 2. Altered source versions must be plainly marked as such, and must not be misrepresented as being the original software.
+ * 3. This notice may not be removed or altered from any source distribution.
+ */
+
+package net.galmiza.android.spectrogram;
+
+import net.galmiza.android.engine.sound.BlockRing;
+
+/**
+ * Counters of the recording service, to check that processing keeps up with capture at a given resolution
+ * Samples can be lost at three places, all counted:
+ *  the driver buffer overflows (inferred from the driver timestamps, see @method onTimestamp),
+ *  a read fails (the partial record is discarded),
+ *  the ring between capture and processing is full (records are dropped)
+ * Counters are written by the capture thread and can be read from any thread
+ */
+public class CaptureDiagnostics {
+	
+	// Attributes
+	private final int bufferLength; // samples held by the driver buffer
+	private volatile BlockRing<?> ring;
+	private volatile long previousOverruns; // overruns of the rings of the previous starts
+	private volatile long previousDroppedSamples; // samples dropped by the rings of the previous starts
+	private volatile long reads; // successful reads
+	private volatile long samples; // samples read
+	private volatile long shortReads; // reads that returned fewer samples than requested
+	private volatile long errors; // reads that returned an error code
+	private volatile int lastError; // last error code, 0 if none
+	private volatile long discardedSamples; // samples of the records discarded after an error
+	private volatile long lateRecords; // records read when the driver buffer was more than half full
+	private volatile long gapSamples; // samples overwritten in the driver buffer before being read
+	private long origin = -1; // driver position of the first sample read
+	
+	/**
+	 * Constructor
+	 * @param bufferLength is the size (in samples) of the driver buffer
+	 */
+	CaptureDiagnostics(int bufferLength) {
+		this.bufferLength = bufferLength;
+	}
+	
+	/**
+	 * Simple gets
+	 */
+	public long getReads() {				return reads;	}
+	public long getSamples() {				return samples;	}
+	public long getShortReads() {			return shortReads;	}
+	public long getErrors() {				return errors;	}
+	public int getLastError() {				return lastError;	}
+	public long getLateRecords() {			return lateRecords;	}
+	public long getGapSamples() {			return gapSamples;	}
+	
+	/**
+	 * Records dropped because the processing thread did not keep up
+	 */
+	public long getOverruns() {
+		BlockRing<?> r = ring;
+		return previousOverruns + (r == null ? 0 : r.getOverruns());
+	}
+	
+	/**
+	 * All the samples lost between the microphone and the processing thread
+	 */
+	public long getDroppedSamples() {
+		BlockRing<?> r = ring;
+		return gapSamples + discardedSamples + previousDroppedSamples + (r == null ? 0 : r.getDroppedSamples());
+	}
+	
+	/**
+	 * Called by the recording service when it starts, with the ring of records it uses
+	 * Counters of the previous ring are kept, so the counters cover every start since the diagnostics were created
+	 */
+	void start(BlockRing<?> ring) {
+		BlockRing<?> previous = this.ring;
+		if (previous != null) {
+			previousOverruns = previousOverruns+previous.getOverruns();
+			previousDroppedSamples = previousDroppedSamples+previous.getDroppedSamples();
+		}
+		this.ring = ring;
+		origin = -1;
+	}
+	
+	/**
+	 * Called after each read of @param requested samples that returned @param result (samples read or error code)
+	 */
+	void onRead(int requested, int result) {
+		if (result < 0) {
+			errors = errors+1;
+			lastError = result;
+			return;
+		}
+		reads = reads+1;
+		samples = samples+result;
+		if (result < requested) shortReads = shortReads+1;
+	}
+	
+	/**
+	 * Called when @param length samples already read are discarded
+	 */
+	void onDiscard(int length) {
+		discardedSamples = discardedSamples+length;
+	}
+	
+	/**
+	 * Called after a record is read, with @param position the number of samples captured by the driver so far
+	 * Samples captured and not yet read are waiting in the driver buffer, more than it holds means that some were overwritten
+	 */
+	void onTimestamp(long position) {
+		if (origin < 0) origin = position-samples-gapSamples; // assumes the driver buffer is empty when the first timestamp is taken
+		long waiting = position-origin-samples-gapSamples;
+		if (waiting > bufferLength)		gapSamples = gapSamples+waiting-bufferLength;
+		else if (2*waiting > bufferLength)	lateRecords = lateRecords+1;
+	}
+	
+	@Override
+	public String toString() {
+		return "reads="+reads+" samples="+samples+" short="+shortReads+" errors="+errors+" (last "+lastError+")"
+				+" late="+lateRecords+" gaps="+gapSamples+" overruns="+getOverruns()+" dropped="+getDroppedSamples();
+	}
+}
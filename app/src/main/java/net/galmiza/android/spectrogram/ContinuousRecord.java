@@ -17,22 +17,45 @@ package net.galmiza.android.spectrogram;
 
 import android.media.AudioFormat;
 import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.os.Build;
 import android.media.MediaRecorder.AudioSource;
 
+import net.galmiza.android.engine.sound.BlockRing;
+import net.galmiza.android.engine.sound.DirectFramer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Recording service
  * Methods prepare/release initiates/releases the service and must be the very first/last calls
  * Methods start/stop starts/stop the recording service in an independent thread
  * Recorded samples are sent to the listener passed as parameter of @method start
+ * or, captured into off-heap (direct) buffers and cut into frames in place, to the listener passed as parameter of @method startDirect
+ * Records go from the capture thread to the processing thread (which calls the listener) through a lock-free ring
+ * of preallocated blocks, so that slow processing never delays a read. Records that find the ring full are counted.
+ * Short reads, read errors and driver buffer overflows are counted as well, see @method getDiagnostics
  */
 public class ContinuousRecord {
 	
+	// Constants
+	private static final int BYTES_PER_SHORT = 2;
+	private static final int READ_DURATION = 20; // ms of samples per read, short reads keep the latency low whatever the fft resolution
+	private static final int BUFFERED_READS = 8; // reads held by the driver buffer, so that a late read does not lose samples
+	private static final int RING_BLOCKS = 32; // records queued between capture and processing, a power of 2
+	private static final long NANOSECONDS = 1000000000L;
+	
 	// Attributes
 	private AudioRecord audioRecord;
 	private int samplingRate;
 	private int recordLength;
-	private Thread thread;
-	private boolean run;
+	private Thread thread; // capture
+	private Thread consumer; // processing
+	private CaptureDiagnostics diagnostics;
+	private DirectFramer directFramer; // kept between starts, its direct buffer is only allocated for a new framing
+	private final AudioTimestamp timestamp = new AudioTimestamp(); // only used by the capture thread
+	private volatile boolean run;
 	
 	/**
 	 * Constructor
@@ -45,28 +68,44 @@ public class ContinuousRecord {
 	int getBufferLength() {
 		return recordLength;
 	}
+	boolean isRecording() {
+		return run;
+	}
+	
+	/**
+	 * Counters of the capture since @method prepare, null before
+	 */
+	CaptureDiagnostics getDiagnostics() {
+		return diagnostics;
+	}
 	
 	/**
 	 * Initiate the recording service
 	 * The service is then ready to start recording
-	 * The buffer size can be forced to be multiple of @param multiple (size in sample count)
+	 * Records last about READ_DURATION ms, their size can be forced to be multiple of @param multiple (size in sample count)
 	 * @param multiple is ineffective if set to 1
+	 * The driver buffer holds several records, it is independent of the record size
 	 */
 	public void prepare(int multiple) {
 		
-		// Setup buffer size
-		int BYTES_PER_SHORT = 2;
-	    recordLength = AudioRecord.getMinBufferSize(samplingRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT)/BYTES_PER_SHORT;
+		// Setup record size
+	    recordLength = Math.max(1, samplingRate*READ_DURATION/1000);
 	    
-	    // Increase buffer size so that it is a multiple of the param
+	    // Increase record size so that it is a multiple of the param
 	    int r = recordLength % multiple;
 	    if (r>0) recordLength += (multiple-r);
 	    
+	    // Driver buffer size, at least the minimum size required by the device
+	    int bufferLength = Math.max(
+	    		AudioRecord.getMinBufferSize(samplingRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT)/BYTES_PER_SHORT,
+	    		BUFFERED_READS*recordLength);
+	    
 	    // Log value
-		//Log.d("ContinuousRecord","Buffer size = "+recordLength+" samples");
+		//Log.d("ContinuousRecord","Record size = "+recordLength+" samples, buffer size = "+bufferLength+" samples");
 	    
 	    // Init audio recording from MIC
-	    audioRecord = new AudioRecord(AudioSource.MIC, samplingRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, recordLength*BYTES_PER_SHORT);
+	    audioRecord = new AudioRecord(AudioSource.MIC, samplingRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferLength*BYTES_PER_SHORT);
+	    diagnostics = new CaptureDiagnostics(bufferLength);
 	}
 	
 	/**
@@ -75,29 +114,172 @@ public class ContinuousRecord {
 	public static interface OnBufferReadyListener {
         void onBufferReady(short[] buffer);
     }
+	public static interface OnFramesReadyListener {
+        void onFramesReady(DirectFramer framer);
+    }
 	
 	/**
 	 * Start recording in a independent thread
-	 * @param listener is call every time a sample is ready
+	 * @param listener is call every time a sample is ready, on the processing thread
+	 * The buffer must not be kept after the listener returns
 	 */
 	public void start(final OnBufferReadyListener listener) {
 		if (!run && audioRecord!=null) {
 			run = true;
 			//Log.d("ContinuousRecord","Starting service...");
-			audioRecord.startRecording(); 
-	       	final short[] recordBuffer = new short[recordLength];
-	
-	       	thread = new Thread(() -> {
+			short[][] blocks = new short[RING_BLOCKS][recordLength];
+			final short[] overrunBuffer = new short[recordLength]; // receives the records that find the ring full
+			final BlockRing<short[]> ring = new BlockRing<>(blocks);
+			diagnostics.start(ring);
+			
+			consumer = new Thread(() -> {
 				   while (run) {
-						  audioRecord.read(recordBuffer, 0, recordLength);
+						  short[] recordBuffer = ring.peek();
+						  if (recordBuffer == null) {
+							  LockSupport.park();
+							  continue;
+						  }
 						  listener.onBufferReady(recordBuffer);
+						  ring.release();
 				   }
 			   });
+			audioRecord.startRecording();
+	       	thread = new Thread(() -> {
+				   while (run) {
+						  short[] recordBuffer = ring.acquire();
+						  int length = read(recordBuffer != null ? recordBuffer : overrunBuffer);
+						  if (length < recordLength) {
+							  if (!run) break;
+							  diagnostics.onDiscard(length);
+							  pause();
+							  continue;
+						  }
+						  checkTimestamp();
+						  if (recordBuffer == null) {
+							  ring.overrun(recordLength);
+							  continue;
+						  }
+						  ring.publish(recordLength);
+						  LockSupport.unpark(consumer);
+				   }
+			   });
+			consumer.start();
 	       	thread.start();
 			//Log.d("ContinuousRecord","Service started");
 		}
 	}
 	
+	/**
+	 * Start recording in a independent thread, into the off-heap ring of a framer of @param n samples every @param hop samples
+	 * Samples go from the driver to the frames without any copy through the java heap
+	 * @param listener is called on the processing thread every time a record is added to the framer, it reads the available frames
+	 * The framer releases the blocks of the frames read when the listener returns
+	 */
+	public void startDirect(int n, int hop, final OnFramesReadyListener listener) {
+		if (!run && audioRecord!=null) {
+			run = true;
+			if (directFramer != null && directFramer.getFrameLength() == n && directFramer.getHop() == hop && directFramer.getBlockLength() == recordLength)
+				directFramer.reset();
+			else
+				directFramer = new DirectFramer(n, hop, recordLength, RING_BLOCKS);
+			final DirectFramer framer = directFramer;
+			final BlockRing<ByteBuffer> ring = framer.getRing();
+			final ByteBuffer overrunBuffer = ByteBuffer.allocateDirect(recordLength*BYTES_PER_SHORT); // receives the records that find the ring full
+			final ByteBuffer shortReadBuffer = ByteBuffer.allocateDirect(recordLength*BYTES_PER_SHORT); // receives the end of short reads
+			diagnostics.start(ring);
+			
+			consumer = new Thread(() -> {
+				   while (run) {
+						  if (!framer.update()) {
+							  LockSupport.park();
+							  continue;
+						  }
+						  listener.onFramesReady(framer);
+						  framer.release();
+				   }
+			   });
+			audioRecord.startRecording();
+			thread = new Thread(() -> {
+				   while (run) {
+						  ByteBuffer recordBuffer = ring.acquire();
+						  int length = read(recordBuffer != null ? recordBuffer : overrunBuffer, shortReadBuffer);
+						  if (length < recordLength) {
+							  if (!run) break;
+							  diagnostics.onDiscard(length);
+							  pause();
+							  continue;
+						  }
+						  checkTimestamp();
+						  if (recordBuffer == null) {
+							  ring.overrun(recordLength);
+							  continue;
+						  }
+						  ring.publish(recordLength);
+						  LockSupport.unpark(consumer);
+				   }
+			   });
+			consumer.start();
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Reads a record into @param buffer, short reads are completed by further reads
+	 * @return the number of samples read, less than a record if a read failed or returned nothing
+	 */
+	private int read(short[] buffer) {
+		int length = 0;
+		while (length < recordLength && run) {
+			int result = audioRecord.read(buffer, length, recordLength-length);
+			diagnostics.onRead(recordLength-length, result);
+			if (result <= 0) break;
+			length += result;
+		}
+		return length;
+	}
+	
+	/**
+	 * Same as above into the direct @param buffer
+	 * The driver always writes at the start of the buffer passed to the read, short reads are completed through @param scratch
+	 */
+	private int read(ByteBuffer buffer, ByteBuffer scratch) {
+		int length = 0;
+		while (length < recordLength && run) {
+			int result = audioRecord.read(length == 0 ? buffer : scratch, (recordLength-length)*BYTES_PER_SHORT);
+			if (result > 0) result /= BYTES_PER_SHORT;
+			diagnostics.onRead(recordLength-length, result);
+			if (result <= 0) break;
+			if (length > 0) {
+				scratch.limit(result*BYTES_PER_SHORT).position(0);
+				buffer.position(length*BYTES_PER_SHORT);
+				buffer.put(scratch);
+				scratch.clear();
+				buffer.clear();
+			}
+			length += result;
+		}
+		return length;
+	}
+	
+	/**
+	 * Waits for a record after a failed or empty read, so that a persistent error does not spin the capture thread
+	 */
+	private void pause() {
+		try { Thread.sleep(READ_DURATION); } catch (InterruptedException e) { e.printStackTrace(); }
+	}
+	
+	/**
+	 * Passes the number of samples captured so far by the driver to the diagnostics
+	 * The driver timestamp gives the position of a sample captured at a known time, it is extrapolated to the current time
+	 * Timestamps are only available from Android 7.0
+	 */
+	private void checkTimestamp() {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return;
+		if (audioRecord.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC) != AudioRecord.SUCCESS) return;
+		long elapsed = System.nanoTime()-timestamp.nanoTime;
+		diagnostics.onTimestamp(timestamp.framePosition + elapsed*samplingRate/NANOSECONDS);
+	}
+	
 	/**
 	 * Stop recording
 	 * Notifies the thread to stop and wait until it stops
@@ -107,7 +289,8 @@ public class ContinuousRecord {
 		if (run && audioRecord!=null) {
 			//Log.d("ContinuousRecord","Stopping service...");
 			run = false;
-			while (thread.isAlive())
+			LockSupport.unpark(consumer);
+			while (thread.isAlive() || consumer.isAlive())
 				try { Thread.sleep(10); } catch (InterruptedException e) { e.printStackTrace(); }
 			audioRecord.stop();
 			//Log.d("ContinuousRecord","Service stopped");
@@ -26,6 +26,10 @@ import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
+import net.galmiza.android.engine.sound.TripleBuffer;
+
+import java.text.DecimalFormat;
+
 /**
  * Class associated with the spectrogram view
  * Handles events:
@@ -41,7 +45,11 @@ public class FrequencyView extends View {
     private int pos;
     private int samplingRate;
     private int width, height;
-    private float[] magnitudes;
+    private TripleBuffer<float[]> decibels; // n/2+1 bins from DC to Nyquist, or bins of a band, written by the processing thread
+    private float minFrequency, maxFrequency; // frequencies of the first and last bins, maxFrequency=0 for Nyquist
+    private boolean logSpaced; // bins are geometrically spaced from minFrequency to maxFrequency
+    private volatile float pitch; // fundamental frequency drawn over the spectrogram, 0 if none
+    private DecimalFormat labelFormat = new DecimalFormat("0.###");
     private int[] colorRainbow = new int[] {    0xFFFFFFFF, 0xFFFF00FF, 0xFFFF0000, 0xFFFFFF00, 0xFF00FF00, 0xFF00FFFF, 0xFF0000FF, 0xFF000000 };
     private int[] colorFire = new int[] {    0xFFFFFFFF, 0xFFFFFF00, 0xFFFF0000, 0xFF000000 };
     private int[] colorIce = new int[] {    0xFFFFFFFF, 0xFF00FFFF, 0xFF0000FF, 0xFF000000 };
@@ -78,19 +86,37 @@ public class FrequencyView extends View {
      * Simple sets
      */
     public void setFFTResolution(int res) {
-        magnitudes = new float[res];
+        setSpectrum(res/2+1, 0, 0);
+    }
+    public void setSpectrum(int bins, float minFrequency, float maxFrequency) {
+        setSpectrum(bins, minFrequency, maxFrequency, false);
+    }
+    public void setSpectrum(int bins, float minFrequency, float maxFrequency, boolean logSpaced) {
+        decibels = new TripleBuffer<>(new float[][] {new float[bins], new float[bins], new float[bins]});
+        this.minFrequency = minFrequency;
+        this.maxFrequency = maxFrequency;
+        this.logSpaced = logSpaced;
+    }
+    public void setPitch(float frequency) {
+        pitch = frequency;
     }
     public void setSamplingRate(int sampling) {
         samplingRate = sampling;
     }
-    public void setMagnitudes(float[] m) {
-        System.arraycopy(m, 0, magnitudes, 0, m.length);
+    public void setDecibels(float[] db) {
+        setDecibels(db, 0);
+    }
+    public void setDecibels(float[] db, int offset) {
+        float[] back = decibels.getBack();
+        System.arraycopy(db, offset, back, 0, back.length);
+        decibels.publish();
     }
     
     /**
      * Called whenever a redraw is needed
      * Renders spectrogram and scale on the right
      * Frequency scale can be linear or logarithmic
+     * Log spaced bins (constant-Q) are drawn one after another on a logarithmic scale
      */
     @Override
     public void onDraw(Canvas canvas) {
@@ -109,15 +135,24 @@ public class FrequencyView extends View {
         // Get scale preferences
 		String defFrequency = activity.getString(R.string.preferences_frequency_scale_default_value);
     	boolean logFrequency = !Misc.getPreference("frequency_scale", defFrequency).equals(defFrequency);
+    	float fMin = minFrequency;
+    	float fMax = maxFrequency > 0 ? maxFrequency : samplingRate/2;
+    	float fLow = Math.max(1, fMin); // lowest frequency shown
+        
+        // Latest complete spectrum
+        decibels.update();
+        float[] decibels = this.decibels.getFront();
         
         // Update buffer bitmap
         paint.setColor(Color.BLACK);
         this.canvas.drawLine(pos%rWidth, 0, pos%rWidth, height, paint);
         for (int i=0; i<height; i++) {
-        	float j = getValueFromRelativePosition((float)(height-i)/height, 1, samplingRate/2, logFrequency);
-        	j /= samplingRate/2;
-        	float mag = magnitudes[(int) (j*magnitudes.length/2)];
-            float db = (float) Math.max(0,-20*Math.log10(mag));
+        	float j = (float)(height-i)/height;
+        	if (!logSpaced) {
+        		float f = getValueFromRelativePosition(j, fLow, fMax, logFrequency);
+        		j = Math.max(0, Math.min(1, (f-fMin)/(fMax-fMin)));
+        	}
+            float db = Math.max(0, -decibels[(int) (j*(decibels.length-1))]);
             int c = getInterpolatedColor(colors, db*0.009f);
             paint.setColor(c);
             int x = pos%rWidth;
@@ -127,6 +162,16 @@ public class FrequencyView extends View {
             //this.canvas.drawPoint(pos%rWidth, height-i, paint); // make color even brighter
         }
         
+        // Pitch track, drawn in the bitmap so that it scrolls with the spectrogram
+        float f0 = pitch;
+        if (f0 >= fLow && f0 <= fMax) {
+        	float y = logSpaced ?
+        			(float) (Math.log(f0/fMin)/Math.log(fMax/fMin)) :
+        			getRelativePosition(f0, fLow, fMax, logFrequency);
+        	paint.setColor(Color.CYAN);
+        	this.canvas.drawRect(pos%rWidth, (1f-y)*height-1, pos%rWidth+1, (1f-y)*height+1, paint);
+        }
+        
         // Draw bitmap
         if (pos<rWidth) {
             canvas.drawBitmap(bitmap, wColor, 0, paint);
@@ -151,20 +196,40 @@ public class FrequencyView extends View {
         canvas.drawRect(rWidth + wColor, 0, width, height, paint);
         paint.setColor(Color.WHITE);
         canvas.drawText("kHz", rWidth + wColor, 12*ratio, paint);
-        if (logFrequency) {
+        if (logSpaced) {
+        	for (int i=1; i<5; i++) {
+        		float f = (float) Math.pow(10,i);
+        		if (f < fMin || f > fMax) continue;
+	    		float y = (float) (Math.log(f/fMin)/Math.log(fMax/fMin));
+	    		canvas.drawText("1e"+i, rWidth + wColor, (1f-y)*height, paint);
+    		}
+        } else if (logFrequency) {
         	for (int i=1; i<5; i++) {
-	    		float y = getRelativePosition((float) Math.pow(10,i), 1, samplingRate/2, logFrequency);
+        		float f = (float) Math.pow(10,i);
+        		if (f < fLow || f > fMax) continue;
+	    		float y = getRelativePosition(f, fLow, fMax, logFrequency);
 	    		canvas.drawText("1e"+i, rWidth + wColor, (1f-y)*height, paint);
     		}
         } else {
-	        for (int i=0; i<(samplingRate-500)/2; i+=1000)
-	            canvas.drawText(" "+i/1000, rWidth + wColor, height*(1f-(float) i/(samplingRate/2)), paint);
+        	float step = getLabelStep(fMax-fMin);
+	        for (float f=(float) Math.ceil(fMin/step)*step; f<fMax-step/2; f+=step)
+	            canvas.drawText(" "+labelFormat.format(f/1000), rWidth + wColor, height*(1f-(f-fMin)/(fMax-fMin)), paint);
         }
         
         pos++;
     }
 
     
+    /**
+     * Returns a round step (1, 2 or 5 times a power of 10) giving about 20 labels on the frequency scale
+     */
+    private float getLabelStep(float range) {
+        float step = (float) Math.pow(10, Math.floor(Math.log10(range/20)));
+        if (5*step <= range/20)	return 5*step;
+        if (2*step <= range/20)	return 2*step;
+        return step;
+    }
+    
     /**
      * Converts relative position of a value within given boundaries
      * Log=true for logarithmic scale
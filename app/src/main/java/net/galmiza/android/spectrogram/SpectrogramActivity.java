@@ -28,17 +28,35 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
+import net.galmiza.android.engine.sound.ConstantQ;
+import net.galmiza.android.engine.sound.Decibel;
+import net.galmiza.android.engine.sound.Decimator;
+import net.galmiza.android.engine.sound.DirectFramer;
+import net.galmiza.android.engine.sound.FramePipeline;
+import net.galmiza.android.engine.sound.GoertzelBank;
+import net.galmiza.android.engine.sound.JavaSoundEngine;
+import net.galmiza.android.engine.sound.MelCepstrum;
+import net.galmiza.android.engine.sound.PitchTracker;
+import net.galmiza.android.engine.sound.SlidingDft;
 import net.galmiza.android.engine.sound.SoundEngine;
+import net.galmiza.android.engine.sound.SpectralDescriptors;
+import net.galmiza.android.engine.sound.SpectrumAnalyzer;
+import net.galmiza.android.engine.sound.SpectrumAverager;
+import net.galmiza.android.engine.sound.StreamFramer;
+import net.galmiza.android.engine.sound.Transform;
+import net.galmiza.android.engine.sound.TripleBuffer;
+import net.galmiza.android.engine.sound.Window;
+import net.galmiza.android.engine.sound.ZoomFft;
 
+import java.nio.ShortBuffer;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Entry point of the application
  * Handles:
  *  recording service
- *  fft processing by calling native functions
+ *  fft processing by calling native or java functions
  *  view updates
  *  activity events:
  *   onCreate, onDestroy,
@@ -51,22 +69,57 @@ public class SpectrogramActivity extends AppCompatActivity {
 	static final float PI = (float) Math.PI;
 	static final int INTENT_SETTINGS = 0;
     static final int MY_PERMISSIONS_REQUEST_RECORD_AUDIO = 0;
+    static final int SLIDING_DFT_HOP_DIVISOR = 16; // hop of the sliding dft, as a fraction of the fft resolution
+    static final int CONSTANT_Q_BINS_PER_OCTAVE = 24; // quarter tones
+    static final float CONSTANT_Q_MIN_FREQUENCY = 27.5f; // A0, raised by the transform when the fft resolution is too low
+    static final int MEL_FILTERS = 40;
+    static final int MEL_COEFFICIENTS = 13;
+    static final float MEL_MIN_FREQUENCY = 20;
+    static final float MEL_MAX_FREQUENCY = 8000; // limited to Nyquist
+    static final int PIPELINE_MAX_WORKERS = 4;
+    static final int PIPELINE_SLOTS_PER_WORKER = 4;
+    static final float PITCH_MIN_FREQUENCY = 40;
+    static final float PITCH_MAX_FREQUENCY = 2000; // limited to a quarter of the sampling rate
+    static final int PITCH_HOP_DIVISOR = 4; // hop between pitch estimates, as a fraction of the tracker frame
+    static final int REDRAW_SPECTRUM = 1, REDRAW_WAVE = 2, REDRAW_HEADER = 4;
+    static final int DESCRIPTORS_HISTORY = 1024; // frames kept in the spectral descriptors history
 	
 	// Attributes
 	private ActionBar actionBar;
 	private FrequencyView frequencyView;
 	private TimeView timeView;
 	private ContinuousRecord recorder;
-	private SoundEngine nativeLib;
+	private Transform engine;
+	private SpectrumAnalyzer analyzer;
+	private GoertzelBank monitor; // only set in monitoring mode
+	private SlidingDft slidingDft; // only set in sliding dft mode
+	private ZoomFft zoomFft; // only set in zoom fft mode
+	private MelCepstrum cepstrum; // only set when mel features are enabled
+	private MelCepstrum.OnFeaturesListener featuresListener;
+	private SpectrumAverager averager; // only set when spectra are averaged
+	private Decimator decimator; // only set when decimating
+	private FramePipeline pipeline; // only set when frames are analyzed on worker threads
+	private PitchTracker pitchTracker; // only set when pitch tracking is enabled
+	private SpectralDescriptors descriptors; // only set when spectral descriptors are enabled
+	private boolean constantQPending; // constant-Q kernels are being built in the background, only used by the UI thread
 	private Menu menu;
 	private int samplingRate = 44100;
+	private int analysisRate = 44100; // sampling rate of the analyzed samples, lower when decimating
 	private int fftResolution;
 	
 	// Buffers
-	private List<short[]> bufferStack; // Store trunks of buffers
-	private short[] fftBuffer; // buffer supporting the fft process
-	private float[] re; // buffer holding real part during fft process
-	private float[] im; // buffer holding imaginary part during fft process
+	private StreamFramer framer; // cuts the records into overlapping frames
+	private int hop; // samples between the starts of two frames
+	private short[] decimated; // decimated record
+	private float[] spectra; // magnitudes (dB) of all the frames of a record, bins per frame
+	private int bins; // n/2+1, or bins of the band in zoom fft mode
+	private boolean db; // spectra are computed in dB, or as magnitudes when features or averaging need them
+	private TripleBuffer<float[]> levels; // magnitudes of the monitored frequencies, written by the processing thread
+	private boolean estimateReady; // the averager has an estimate that has not been displayed
+	
+	// Redraw requests, merged until the UI thread runs them
+	private final AtomicInteger redrawRequests = new AtomicInteger();
+	private final Runnable redraw = this::redraw;
 	
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -78,9 +131,8 @@ public class SpectrogramActivity extends AppCompatActivity {
 		// Load preferences
 		loadPreferences();
 		
-		// JNI interface
-		nativeLib = new SoundEngine();
-		nativeLib.initFSin();
+		// Sound engine (JNI or java)
+		loadSoundEngine();
 		
 		// Recorder & player
 		recorder = new ContinuousRecord(samplingRate);
@@ -134,7 +186,7 @@ public class SpectrogramActivity extends AppCompatActivity {
 		DecimalFormat df = new DecimalFormat();
 		df.setMaximumFractionDigits(2);
 		TextView time = findViewById(R.id.textview_time_header);
-		time.setText(String.format(getString(R.string.view_header_time), df.format(1000.0f*fftBuffer.length/samplingRate)));
+		time.setText(String.format(getString(R.string.view_header_time), df.format(1000.0f*fftResolution/analysisRate)));
 			
 		// Freqnecy view
 		TextView frequency = findViewById(R.id.textview_frequency_header);
@@ -144,6 +196,8 @@ public class SpectrogramActivity extends AppCompatActivity {
 				getString(R.string.preferences_window_type_default_value));
 		frequency.setText(String.format(
 				getString(R.string.view_header_frequency), fftResolution, window));
+		if (monitor != null) updateMonitorHeader();
+		if (descriptors != null && descriptors.getCount() > 0) updateDescriptorsHeader();
 		
 		// Color
 		boolean nightMode = Misc.getPreference(this, "night_mode", false);
@@ -164,7 +218,38 @@ public class SpectrogramActivity extends AppCompatActivity {
 	 * Control recording service
 	 */
 	private void startRecording() {
-		recorder.start(recordBuffer -> getTrunks(recordBuffer));
+		ContinuousRecord.OnBufferReadyListener listener;
+		if (monitor != null)
+			listener = recordBuffer -> monitor(recordBuffer);
+		else if (slidingDft != null)
+			listener = recordBuffer -> slide(recordBuffer);
+		else if (zoomFft != null)
+			listener = recordBuffer -> zoom(recordBuffer);
+		else if (decimator == null && pitchTracker == null && pipeline == null && Misc.getPreference(this, "direct_capture", false)) {
+			recorder.startDirect(framer.getFrameLength(), hop, directFramer -> analyzeFrames(directFramer));
+			return;
+		} else
+			listener = recordBuffer -> getTrunks(recordBuffer);
+		
+		// Pitch is estimated before the analysis of each record
+		if (pitchTracker != null) {
+			final ContinuousRecord.OnBufferReadyListener analysis = listener;
+			listener = recordBuffer -> {
+				if (pitchTracker.process(recordBuffer, 0, recordBuffer.length) > 0)
+					frequencyView.setPitch(pitchTracker.getPitch());
+				analysis.onBufferReady(recordBuffer);
+			};
+		}
+		
+		// Decimated records are passed on instead of the captured ones
+		if (decimator != null) {
+			final ContinuousRecord.OnBufferReadyListener analysis = listener;
+			listener = recordBuffer -> {
+				decimator.process(recordBuffer, 0, recordBuffer.length, decimated, 0);
+				analysis.onBufferReady(decimated);
+			};
+		}
+		recorder.start(listener);
 	}
 	private void stopRecording() {
 		recorder.stop();
@@ -228,11 +313,15 @@ public class SpectrogramActivity extends AppCompatActivity {
 	    	if (requestCode == INTENT_SETTINGS) {
 	    		
 	    		// Stop and release recorder if running
+	    		// Pipeline workers are stopped as well, before views and buffers are reconfigured
 	    		recorder.stop();
 	    		recorder.release();
+	    		if (pipeline != null) pipeline.stop();
+	    		pipeline = null;
 	    		
 	    		// Update preferences
 	    		loadPreferences();
+	    		loadSoundEngine();
 	    		
 	    		// Notify view
 	    		frequencyView.setFFTResolution(fftResolution);
@@ -263,6 +352,7 @@ public class SpectrogramActivity extends AppCompatActivity {
 		// Stop input streaming
 		recorder.stop();
 		recorder.release();
+		if (pipeline != null) pipeline.stop();
 	}
 	
 	
@@ -287,6 +377,30 @@ public class SpectrogramActivity extends AppCompatActivity {
 	}
 
 	
+	/**
+	 * Instantiates the sound engine selected in preferences
+	 * Falls back to the java implementation if the native library cannot be loaded
+	 * The fixed-point engine only replaces the spectrogram fft, other modes use the Java implementation
+	 */
+	private void loadSoundEngine() {
+		engine = createSoundEngine();
+	}
+	private Transform createSoundEngine() {
+		String type = Misc.getPreference(this, "engine_type", getString(R.string.preferences_engine_type_default_value));
+		Transform engine = null;
+		if (type.equals("Native")) {
+			try {
+				engine = new SoundEngine();
+			} catch (LinkageError e) {
+				e.printStackTrace();
+			}
+		}
+		if (engine == null) engine = new JavaSoundEngine();
+		engine.initFSin();
+		return engine;
+	}
+	
+	
 	/**
 	 * Initiates the recording service
 	 * Creates objects to handle recording and FFT processing
@@ -296,93 +410,421 @@ public class SpectrogramActivity extends AppCompatActivity {
 		// Stop and release recorder if running
 		recorder.stop();
 		recorder.release();
+		if (pipeline != null) pipeline.stop();
+		pipeline = null;
+		
+		// Decimation front-end trades bandwidth for a smaller fft at the same frequency resolution
+		int factor = Integer.parseInt(Misc.getPreference(this, "decimation", getString(R.string.preferences_decimation_default_value)));
+		decimator = factor > 1 ? new Decimator(factor) : null;
+		analysisRate = samplingRate/factor;
+		frequencyView.setSamplingRate(analysisRate);
 		
 		// Prepare recorder
-		recorder.prepare(fftResolution); // Record buffer size if forced to be a multiple of the fft resolution
+		recorder.prepare(factor); // Short records, forced to be a multiple of the decimation factor, frames are assembled by the framer
+		int length = recorder.getBufferLength()/factor; // samples analyzed per record
+		decimated = decimator != null ? new short[length] : null;
 		
 		// Build buffers for runtime
+		// Fft plans and window coefficients are cached so that switching between resolutions does not repeat the setup
 		int n = fftResolution;
-		fftBuffer = new short[n];
-		re = new float[n];
-		im = new float[n];
- 		bufferStack = new ArrayList<>();
-		int l = recorder.getBufferLength()/(n/2);
-		for (int i=0; i<l+1; i++) //+1 because the last one has to be used again and sent to first position
-			bufferStack.add(new short[n/2]); // preallocate to avoid new within processing loop
+		String window = Misc.getPreference(
+				this,
+				"window_type",
+				getString(R.string.preferences_window_type_default_value));
+		String mode = Misc.getPreference(this, "analysis_mode", getString(R.string.preferences_analysis_mode_default_value));
+		String scale = Misc.getPreference(this, "frequency_scale", getString(R.string.preferences_frequency_scale_default_value));
+		
+		// Constant-Q scale applies cached sparse kernels to the spectrogram fft, the kernels carry their own window
+		// Kernels that are not cached yet are built in the background, bins stay linear until they are ready
+		ConstantQ cq = null;
+		if (scale.equals("Constant-Q") && mode.equals(getString(R.string.preferences_analysis_mode_default_value))) {
+			cq = ConstantQ.getCached(analysisRate, n, CONSTANT_Q_BINS_PER_OCTAVE, CONSTANT_Q_MIN_FREQUENCY);
+			if (cq == null)					buildConstantQ(analysisRate, n);
+			else if (cq.getBinCount() < 2)	cq = null;
+		}
+		final ConstantQ constantQ = cq;
+		final Window analyzerWindow = constantQ != null ? Window.RECTANGULAR : Window.fromName(window);
+		final boolean fixedPoint = Misc.getPreference(this, "engine_type", getString(R.string.preferences_engine_type_default_value)).equals("Fixed-point");
+		analyzer = fixedPoint ? new SpectrumAnalyzer(n, analyzerWindow) : new SpectrumAnalyzer(engine, n, analyzerWindow);
+		analyzer.setConstantQ(constantQ);
+		
+		// Mel features are extracted from the magnitudes of the spectrogram fft
+		cepstrum = null;
+		if (constantQ == null && mode.equals(getString(R.string.preferences_analysis_mode_default_value)) && Misc.getPreference(this, "mel_features", false)) {
+			cepstrum = new MelCepstrum(analysisRate, n, MEL_FILTERS, MEL_COEFFICIENTS, MEL_MIN_FREQUENCY, Math.min(MEL_MAX_FREQUENCY, analysisRate/2));
+			cepstrum.setOnFeaturesListener(featuresListener);
+		}
+		
+		// Monitoring mode only runs Goertzel filters on the selected frequencies (same resolution as the fft)
+		if (mode.equals("Monitoring")) {
+			String frequencies = Misc.getPreference(this, "monitored_frequencies", getString(R.string.preferences_monitored_frequencies_default_value));
+			monitor = new GoertzelBank(analysisRate, parseFrequencies(frequencies), n);
+			int count = monitor.getFrequencies().length;
+			levels = new TripleBuffer<>(new float[][] {new float[count], new float[count], new float[count]});
+		} else {
+			monitor = null;
+		}
+		
+		// Sliding dft mode updates the spectrum every few samples instead of every half frame
+		if (mode.equals("Sliding DFT"))
+			slidingDft = new SlidingDft(n, Math.max(1, n/SLIDING_DFT_HOP_DIVISOR), Window.fromName(window), true);
+		else
+			slidingDft = null;
+		
+		// Zoom fft mode analyzes a narrow band with a small fft run on decimated samples
+		zoomFft = null;
+		if (mode.equals("Zoom FFT")) {
+			try {
+				float low = Float.parseFloat(Misc.getPreference(this, "zoom_low_frequency", getString(R.string.preferences_zoom_low_frequency_default_value)));
+				float high = Float.parseFloat(Misc.getPreference(this, "zoom_high_frequency", getString(R.string.preferences_zoom_high_frequency_default_value)));
+				zoomFft = new ZoomFft(engine, analysisRate, low, high, n, Window.fromName(window));
+			} catch (IllegalArgumentException e) { // also catches NumberFormatException
+				e.printStackTrace();
+			}
+		}
+		if (zoomFft != null)			frequencyView.setSpectrum(zoomFft.getBinCount(), zoomFft.getMinFrequency(), zoomFft.getMaxFrequency());
+		else if (constantQ != null)		frequencyView.setSpectrum(constantQ.getBinCount(), constantQ.getMinFrequency(), constantQ.getMaxFrequency(), true);
+		else							frequencyView.setFFTResolution(n);
+		
+		// Spectrogram frames overlap by the selected fraction (half of the frame by default)
+		float overlap;
+		try {
+			overlap = Float.parseFloat(Misc.getPreference(this, "overlap", getString(R.string.preferences_overlap_default_value)))/100;
+		} catch (NumberFormatException e) {
+			overlap = Float.parseFloat(getString(R.string.preferences_overlap_default_value))/100;
+		}
+		hop = StreamFramer.getHop(n, overlap);
+		framer = new StreamFramer(n, hop, length);
+		int frames;
+		if (zoomFft != null) {
+			frames = zoomFft.getFrameCount(length);
+			bins = zoomFft.getBinCount();
+		} else {
+			frames = slidingDft != null ?
+					slidingDft.getFrameCount(length) :
+					framer.getMaxFrameCount(length);
+			bins = analyzer.getBinCount();
+		}
+		spectra = new float[frames*bins]; // preallocate to avoid new within processing loop
+		
+		// Averaging accumulates the power of every frame, the views are only updated when a new estimate is available
+		averager = null;
+		SpectrumAverager.Mode averaging = SpectrumAverager.Mode.fromName(Misc.getPreference(this, "averaging", getString(R.string.preferences_averaging_default_value)));
+		if (monitor == null && averaging != SpectrumAverager.Mode.NONE) {
+			int averaged;
+			try {
+				averaged = Math.max(1, Integer.parseInt(Misc.getPreference(this, "averaging_frames", getString(R.string.preferences_averaging_frames_default_value)).trim()));
+			} catch (NumberFormatException e) {
+				averaged = Integer.parseInt(getString(R.string.preferences_averaging_frames_default_value));
+			}
+			averager = new SpectrumAverager(bins, averaging, averaged);
+		}
+		// Spectral descriptors need linearly spaced bins
+		descriptors = null;
+		if (monitor == null && constantQ == null && Misc.getPreference(this, "spectral_descriptors", false)) {
+			if (zoomFft != null)	descriptors = new SpectralDescriptors(bins, zoomFft.getMinFrequency(), (zoomFft.getMaxFrequency()-zoomFft.getMinFrequency())/Math.max(1, bins-1), DESCRIPTORS_HISTORY);
+			else					descriptors = new SpectralDescriptors(bins, 0, (float) analysisRate/n, DESCRIPTORS_HISTORY);
+		}
+		db = cepstrum == null && averager == null && descriptors == null;
+		estimateReady = false;
+		
+		// Pitch tracking runs on the recorded (or decimated) stream, the track is drawn over the spectrogram
+		pitchTracker = null;
+		frequencyView.setPitch(0);
+		if (monitor == null && Misc.getPreference(this, "pitch_tracking", false)) {
+			try {
+				int frame = PitchTracker.getFrameLength(analysisRate, PITCH_MIN_FREQUENCY);
+				float max = Math.min(PITCH_MAX_FREQUENCY, analysisRate/4);
+				pitchTracker = new PitchTracker(createSoundEngine(), analysisRate, frame, frame/PITCH_HOP_DIVISOR, PITCH_MIN_FREQUENCY, max, PitchTracker.DEFAULT_THRESHOLD);
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		// Spectrogram frames can be analyzed on worker threads (each one with its own engine and analyzer)
+		if (monitor == null && slidingDft == null && zoomFft == null && Misc.getPreference(this, "parallel_frames", false)) {
+			int workers = Math.max(1, Math.min(PIPELINE_MAX_WORKERS, Runtime.getRuntime().availableProcessors()-1));
+			pipeline = new FramePipeline(workers, workers*PIPELINE_SLOTS_PER_WORKER, () -> {
+				SpectrumAnalyzer a = fixedPoint ? new SpectrumAnalyzer(n, analyzerWindow) : new SpectrumAnalyzer(createSoundEngine(), n, analyzerWindow);
+				a.setConstantQ(constantQ);
+				return a;
+			}, db, (spectrum, last) -> {
+				accumulate(spectrum, 0);
+				if (last) display(spectrum, 0);
+			});
+		}
 
         // Start recording
         startRecording();
         
 		// Log
 		//Log.d("recorder.getBufferLength()", recorder.getBufferLength()+" samples");
-		//Log.d("bufferStack.size()", bufferStack.size()+" trunks");
+		//Log.d("spectra.length", spectra.length/bins+" frames");
 	}
 	
 	
+	/**
+	 * Builds the constant-Q kernels of a @param n points fft on a background thread, then reloads the engine to use them
+	 * Only one build runs at a time, the reload starts the build of the current configuration if it changed meanwhile
+	 */
+	private void buildConstantQ(final int samplingRate, final int n) {
+		if (constantQPending) return;
+		constantQPending = true;
+		new Thread(() -> {
+			ConstantQ.get(samplingRate, n, CONSTANT_Q_BINS_PER_OCTAVE, CONSTANT_Q_MIN_FREQUENCY);
+			runOnUiThread(() -> {
+				constantQPending = false;
+				if (isFinishing()) return;
+				boolean recording = recorder.isRecording();
+				loadEngine();
+				updateHeaders();
+				if (!recording) stopRecording();
+			});
+		}).start();
+	}
+	
 	/**
 	 * Called every time the microphone record a sample
-	 * Divide into smaller buffers (of size=resolution) which are overlapped by 50%
-	 * Send these buffers for FFT processing (call to process())
+	 * Appends the record to the framer, then analyzes the frames (of size=resolution) it completed, one every hop samples
+	 * Frames are read in place from the framer ring and analyzed in batches, then passed to process(), or copied to the pipeline
+	 * Records are short, most of them complete one frame or none (large resolutions), views are updated at the hop rate
 	 */
 	private void getTrunks(short[] recordBuffer) {
-		int n = fftResolution;
-		
-		// Trunks are consecutive n/2 length samples		
-		for (int i=0; i<bufferStack.size()-1; i++)
-			System.arraycopy(recordBuffer, n/2*i, bufferStack.get(i+1), 0, n/2);
-		
-		// Build n length buffers for processing
-		// Are build from consecutive trunks
-		for (int i=0; i<bufferStack.size()-1; i++) {
-			System.arraycopy(bufferStack.get(i), 0, fftBuffer, 0, n/2);
-			System.arraycopy(bufferStack.get(i+1), 0, fftBuffer, n/2, n/2);
-			process(); 
+		framer.write(recordBuffer, 0, recordBuffer.length);
+		analyzeFrames();
+	}
+	
+	private void analyzeFrames() {
+		short[] buffer = framer.getBuffer();
+		int frames = framer.getFrameCount();
+		if (pipeline != null) {
+			for (int f=0; f<frames; f++) {
+				int offset = framer.next();
+				pipeline.submit(buffer, offset, f == frames-1);
+				if (f == frames-1) timeView.setWave(buffer, offset);
+			}
+			return;
 		}
 		
-		// Last item has not yet fully be used (only its first half)
-		// Move it to first position in arraylist so that its last half is used
-		short[] first = bufferStack.get(0);
-		short[] last = bufferStack.get(bufferStack.size()-1);
-		System.arraycopy(last, 0, first, 0, n/2);
+		// Batches of frames that follow each other in the ring, two when the frames wrap around its end
+		int n = framer.getFrameLength();
+		for (int f=0; f<frames; ) {
+			int count = framer.getContiguousFrameCount();
+			int offset = framer.next(count);
+			analyzer.analyzeBatch(buffer, offset, n+(count-1)*hop, hop, spectra, f*bins, db);
+			f += count;
+			if (f == frames) timeView.setWave(buffer, offset+(count-1)*hop);
+		}
+		if (frames > 0) process(frames);
 	}
 	
 	/**
-	 * Processes the sound waves
-	 * Computes FFT
-	 * Update views
+	 * Same as above for direct capture, the recorder has added a record to the off-heap framer
+	 * Frames are read in place from the capture buffers, samples never go through the java heap
 	 */
-	private void process() {
-		int n = fftResolution;
-		int log2_n = (int) (Math.log(n)/Math.log(2));
-
-		nativeLib.shortToFloat(fftBuffer, re, n);
-		nativeLib.clearFloat(im, n);	// Clear imaginary part
-		timeView.setWave(re);
-		
-		// Windowing to reduce spectrum leakage
-		String window = Misc.getPreference(
-				this,
-				"window_type",
-				getString(R.string.preferences_window_type_default_value));
-		
-		if (window.equals("Rectangular"))			nativeLib.windowRectangular(re, n);
-		else if (window.equals("Triangular"))		nativeLib.windowTriangular(re, n);
-		else if (window.equals("Welch"))			nativeLib.windowWelch(re, n);
-		else if (window.equals("Hanning"))			nativeLib.windowHanning(re, n);
-		else if (window.equals("Hamming"))			nativeLib.windowHamming(re, n);
-		else if (window.equals("Blackman"))			nativeLib.windowBlackman(re, n);
-		else if (window.equals("Nuttall"))			nativeLib.windowNuttall(re, n);
-		else if (window.equals("Blackman-Nuttall"))	nativeLib.windowBlackmanNuttall(re, n);
-		else if (window.equals("Blackman-Harris"))	nativeLib.windowBlackmanHarris(re, n);
-		
-		nativeLib.fft(re, im, log2_n, 0);	// Move into frquency domain 
-		nativeLib.toPolar(re, im, n);	// Move to polar base
-
-		frequencyView.setMagnitudes(re);
-		runOnUiThread(() -> {
-			frequencyView.invalidate();
-			timeView.invalidate();
-		});
+	private void analyzeFrames(DirectFramer directFramer) {
+		ShortBuffer buffer = directFramer.getBuffer();
+		int frames = directFramer.getFrameCount();
+		int n = directFramer.getFrameLength();
+		for (int f=0; f<frames; ) {
+			int count = directFramer.getContiguousFrameCount();
+			int offset = directFramer.next(count);
+			analyzer.analyzeBatch(buffer, offset, n+(count-1)*hop, hop, spectra, f*bins, db);
+			f += count;
+			if (f == frames) timeView.setWave(buffer, offset+(count-1)*hop);
+		}
+		if (frames > 0) process(frames);
+	}
+	
+	/**
+	 * Called every time the microphone record a sample in sliding dft mode
+	 * The sliding dft keeps its own history, spectra are produced every hop samples
+	 */
+	private void slide(short[] recordBuffer) {
+		keepRecord(recordBuffer);
+		int frames = slidingDft.process(recordBuffer, 0, recordBuffer.length, spectra, db);
+		if (frames > 0) {
+			setLatestWave();
+			process(frames);
+		}
+	}
+	
+	/**
+	 * Called every time the microphone record a sample in zoom fft mode
+	 */
+	private void zoom(short[] recordBuffer) {
+		keepRecord(recordBuffer);
+		int frames = zoomFft.process(recordBuffer, 0, recordBuffer.length, spectra, db);
+		setLatestWave();
+		if (frames > 0) process(frames);
+		else requestRedraw(REDRAW_WAVE);
+	}
+	
+	/**
+	 * Keeps the record in the framer for the time view, in the modes that do not read frames from it
+	 * Records are shorter than a frame, the framer holds the last frame worth of samples
+	 */
+	private void keepRecord(short[] recordBuffer) {
+		framer.write(recordBuffer, 0, recordBuffer.length);
+		framer.skipToLatest();
+	}
+	
+	/**
+	 * Shows the last frame worth of samples in the time view
+	 */
+	private void setLatestWave() {
+		int offset = framer.skipToLatest();
+		if (offset >= 0) timeView.setWave(framer.getBuffer(), offset);
+	}
+	
+	/**
+	 * Called every time the microphone record a sample in monitoring mode
+	 * Feeds the Goertzel filters, headers are updated once per record if a measure completed
+	 */
+	private void monitor(short[] recordBuffer) {
+		keepRecord(recordBuffer);
+		if (monitor.process(recordBuffer, 0, recordBuffer.length) == 0) return;
+		float[] back = levels.getBack();
+		System.arraycopy(monitor.getMagnitudes(), 0, back, 0, back.length);
+		levels.publish();
+		setLatestWave();
+		requestRedraw(REDRAW_HEADER | REDRAW_WAVE);
+	}
+	
+	/**
+	 * Shows the levels of the monitored frequencies in the frequency view header
+	 */
+	private void updateMonitorHeader() {
+		float[] frequencies = monitor.getFrequencies();
+		levels.update();
+		float[] levels = this.levels.getFront();
+		StringBuilder text = new StringBuilder();
+		for (int i=0; i<frequencies.length; i++) {
+			if (i > 0) text.append('\n');
+			text.append(String.format(getString(R.string.view_header_monitor), frequencies[i], Decibel.fromMagnitude(levels[i])));
+		}
+		TextView frequency = findViewById(R.id.textview_frequency_header);
+		frequency.setText(text);
+	}
+	
+	/**
+	 * Shows the spectral descriptors of the latest frame in the frequency view header
+	 */
+	private void updateDescriptorsHeader() {
+		int i = descriptors.getNewest();
+		TextView frequency = findViewById(R.id.textview_frequency_header);
+		frequency.setText(String.format(getString(R.string.view_header_descriptors),
+				descriptors.getCentroids()[i], descriptors.getRolloffs()[i], descriptors.getFlatnesses()[i]));
+	}
+	
+	/**
+	 * Returns the spectral descriptors history, null when disabled
+	 * The arrays are written on the recording thread, see SpectralDescriptors
+	 */
+	public SpectralDescriptors getSpectralDescriptors() {
+		return descriptors;
+	}
+	
+	/**
+	 * Returns the counters of the capture (reads, errors, lost samples) since the engine was loaded
+	 * Frames dropped by the pipeline, if any, are counted by getDroppedFrames()
+	 */
+	public CaptureDiagnostics getCaptureDiagnostics() {
+		return recorder.getDiagnostics();
+	}
+	public long getDroppedFrames() {
+		FramePipeline pipeline = this.pipeline;
+		return pipeline == null ? 0 : pipeline.getDroppedFrames();
+	}
+	
+	/**
+	 * Parses a list of frequencies (Hz) separated by commas or spaces
+	 * Values that are not numbers or not below the Nyquist frequency are ignored
+	 */
+	private float[] parseFrequencies(String list) {
+		String[] items = list.trim().split("[,;\\s]+");
+		float[] frequencies = new float[items.length];
+		int count = 0;
+		for (String item : items) {
+			try {
+				float f = Float.parseFloat(item);
+				if (f > 0 && f < analysisRate/2) frequencies[count++] = f;
+			} catch (NumberFormatException e) {
+				// Ignored
+			}
+		}
+		float[] result = new float[count];
+		System.arraycopy(frequencies, 0, result, 0, count);
+		return result;
+	}
+	
+	/**
+	 * Registers a consumer of the mel features (log-mel energies and MFCC of each frame)
+	 * The listener is called on the recording thread with arrays reused from frame to frame
+	 */
+	public void setOnFeaturesListener(MelCepstrum.OnFeaturesListener listener) {
+		featuresListener = listener;
+		if (cepstrum != null)	cepstrum.setOnFeaturesListener(listener);
+	}
+	
+	/**
+	 * Processes the FFT magnitudes in dB (n/2+1 bins) of the frames completed by a record
+	 * dB are computed on the processing thread so that the UI thread does not evaluate any logarithm
+	 * Spectra are magnitudes when mel features or averaging are enabled, they use every frame and only the displayed spectrum is converted
+	 * Update views once per record, with the latest frame (or the latest estimate when averaging)
+	 */
+	private void process(int frames) {
+		for (int f=0; f<frames; f++)
+			accumulate(spectra, f*bins);
+		display(spectra, (frames-1)*bins);
+	}
+	
+	/**
+	 * Feeds the mel features, the descriptors and the averager with the magnitudes of a frame
+	 */
+	private void accumulate(float[] spectrum, int offset) {
+		if (db) return;
+		if (cepstrum != null)	cepstrum.process(spectrum, offset);
+		if (descriptors != null)	descriptors.process(spectrum, offset);
+		if (averager != null)	estimateReady |= averager.add(spectrum, offset);
+	}
+	
+	/**
+	 * Shows a spectrum (or the averaged estimate, if a new one is available), magnitudes are converted in place
+	 */
+	private void display(float[] spectrum, int offset) {
+		if (!db) {
+			if (averager != null) {
+				if (!estimateReady) return;
+				estimateReady = false;
+				averager.getDecibels(spectrum, offset);
+			} else {
+				Decibel.fromMagnitudes(spectrum, offset, spectrum, offset, bins);
+			}
+		}
+		frequencyView.setDecibels(spectrum, offset);
+		requestRedraw(REDRAW_SPECTRUM | REDRAW_WAVE | (descriptors != null ? REDRAW_HEADER : 0));
+	}
+	
+	/**
+	 * Asks the UI thread to redraw views, requests made before it runs are merged into a single redraw
+	 * Views read the latest complete frame from their triple buffers
+	 */
+	private void requestRedraw(int views) {
+		int requests;
+		do {
+			requests = redrawRequests.get();
+		} while (!redrawRequests.compareAndSet(requests, requests | views));
+		if (requests == 0) runOnUiThread(redraw);
+	}
+	private void redraw() {
+		int requests = redrawRequests.getAndSet(0);
+		if ((requests & REDRAW_HEADER) != 0) {
+			if (monitor != null)			updateMonitorHeader();
+			else if (descriptors != null)	updateDescriptorsHeader();
+		}
+		if ((requests & REDRAW_SPECTRUM) != 0)	frequencyView.invalidate();
+		if ((requests & REDRAW_WAVE) != 0)		timeView.invalidate();
 	}
 	
 	
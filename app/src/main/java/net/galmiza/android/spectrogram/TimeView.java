@@ -26,6 +26,10 @@ import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 
+import net.galmiza.android.engine.sound.TripleBuffer;
+
+import java.nio.ShortBuffer;
+
 /**
  * Class associated with the wave form view
  * Handles events:
@@ -38,7 +42,7 @@ public class TimeView extends View {
     private GestureDetector detector;
     private float gain = 1.0f;
     private int fftResolution;
-    private float[] wave;
+    private TripleBuffer<short[]> wave; // written by the processing thread
     
     // Window
     public TimeView(Context context) {
@@ -73,10 +77,21 @@ public class TimeView extends View {
      */
     public void setFFTResolution(int res) {
     	fftResolution = res;
-    	wave = new float[res];
+    	wave = new TripleBuffer<>(new short[][] {new short[res], new short[res], new short[res]});
+    }
+    public void setWave(short[] w) {
+    	setWave(w, 0);
+    }
+    public void setWave(short[] w, int offset) {
+    	short[] back = wave.getBack();
+    	System.arraycopy(w, offset, back, 0, back.length);
+    	wave.publish();
     }
-    public void setWave(float[] w) {
-    	System.arraycopy(w, 0, wave, 0, w.length);
+    public void setWave(ShortBuffer w, int offset) {
+    	short[] back = wave.getBack();
+    	for (int i=0; i<back.length; i++)
+    		back[i] = w.get(offset+i);
+    	wave.publish();
     }
 
     /**
@@ -96,15 +111,18 @@ public class TimeView extends View {
 		else			paint.setColor(Color.DKGRAY);
     	canvas.drawLine(0, height/2, width, height/2, paint);
     	
-    	// Draw wave
+    	// Draw wave, the latest complete one
+    	this.wave.update();
+    	short[] wave = this.wave.getFront();
     	paint.setStrokeWidth(Integer.valueOf(Misc.getPreference(a, "line_width", "1")));
     	if (!nightMode) paint.setColor(Color.BLACK);
 		else		 	paint.setColor(Color.WHITE);
+    	float scale = 0.5f*gain/32768; // 16 bits samples are mapped to [-1,1[
     	float x1 = 0;
-    	float y1 = height*(0.5f+0.5f*gain*wave[0]);
+    	float y1 = height*(0.5f+scale*wave[0]);
     	for (int i=1; i<fftResolution; i++) {
     		float x2 = width*i/(fftResolution);
-    		float y2 = height*(0.5f+0.5f*gain*wave[i]);
+    		float y2 = height*(0.5f+scale*wave[i]);
     		if ((x1>0 && x1<width) && (x2>0 && x2<width))
     			canvas.drawLine(x1, height-y1, x2, height-y2, paint);
     		x1 = x2;
@@ -0,0 +1,63 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockRingTest {
+
+    @Test
+    public void acquire_countsOverrunsWhenFull() throws Exception {
+        BlockRing<short[]> ring = new BlockRing<>(new short[2][4]);
+        assertNull(ring.peek());
+        for (int i = 0; i < 2; i++) {
+            ring.acquire()[0] = (short) i;
+            ring.publish(4-i);
+        }
+        assertNull(ring.acquire());
+        ring.overrun(4);
+        assertEquals(1, ring.getOverruns());
+        assertEquals(4, ring.getDroppedSamples());
+        assertEquals(0, ring.peek()[0]);
+        assertEquals(4, ring.getLength());
+        ring.release();
+        assertNotNull(ring.acquire());
+        assertEquals(1, ring.peek()[0]);
+        assertEquals(3, ring.getLength());
+    }
+
+    @Test
+    public void peek_deliversAllBlocksInOrderAcrossThreads() throws Exception {
+        final BlockRing<int[]> ring = new BlockRing<>(new int[8][1]);
+        final int count = 200000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; ) {
+                int[] block = ring.acquire();
+                if (block == null) {
+                    Thread.yield();
+                    continue;
+                }
+                block[0] = i++;
+                ring.publish(1);
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; ) {
+            int[] block = ring.peek();
+            if (block == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(i++, block[0]);
+            ring.release();
+        }
+        producer.join();
+        assertEquals(0, ring.getCount());
+        assertEquals(0, ring.getOverruns());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPowerOfTwo() throws Exception {
+        new BlockRing<>(new short[3][1]);
+    }
+}
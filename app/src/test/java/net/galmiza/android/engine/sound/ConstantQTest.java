@@ -0,0 +1,53 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConstantQTest {
+
+    @Test
+    public void analyze_peaksAtToneBin() throws Exception {
+        int fs = 44100, n = 8192;
+        ConstantQ cq = new ConstantQ(fs, n, 12, 27.5f);
+        assertTrue(cq.getMinFrequency() >= 27.5f);
+        assertTrue(cq.getMaxFrequency() <= fs / 2);
+        assertTrue("sparse kernel expected", cq.getKernelSize() < cq.getBinCount() * (n / 2 + 1) / 10);
+
+        int k = cq.getBinCount() / 2;
+        float f = cq.getFrequency(k);
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (16384 * Math.sin(2 * Math.PI * f * i / fs));
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.RECTANGULAR);
+        analyzer.setConstantQ(cq);
+        assertEquals(cq.getBinCount(), analyzer.getBinCount());
+        float[] out = new float[analyzer.getBinCount()];
+        analyzer.analyze(frame, out, false);
+
+        int peak = 0;
+        for (int b = 1; b < out.length; b++)
+            if (out[b] > out[peak]) peak = b;
+        assertEquals(k, peak);
+        assertEquals(0.25f, out[peak], 0.01f);
+        assertTrue(out[k - 2] < out[peak] / 10 && out[k + 2] < out[peak] / 10);
+    }
+
+    @Test
+    public void get_sharesKernels() throws Exception {
+        assertSame(ConstantQ.get(44100, 4096, 24, 27.5f), ConstantQ.get(44100, 4096, 24, 27.5f));
+    }
+
+    @Test
+    public void getCached_onlyReturnsBuiltKernels() throws Exception {
+        assertNull(ConstantQ.getCached(22050, 2048, 12, 55));
+        ConstantQ cq = ConstantQ.get(22050, 2048, 12, 55);
+        assertSame(cq, ConstantQ.getCached(22050, 2048, 12, 55));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setConstantQ_rejectsOtherSize() throws Exception {
+        new SpectrumAnalyzer(new JavaSoundEngine(), 1024, Window.RECTANGULAR).setConstantQ(ConstantQ.get(44100, 4096, 24, 27.5f));
+    }
+}
@@ -0,0 +1,31 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecibelTest {
+
+    @Test
+    public void fromMagnitude_staysWithinErrorBound() throws Exception {
+        for (double m = 1e-9; m < 1e3; m *= 1.0007) {
+            float expected = (float) (20 * Math.log10(m));
+            assertEquals("m=" + m, expected, Decibel.fromMagnitude((float) m), 5e-3f);
+        }
+    }
+
+    @Test
+    public void fromMagnitude_clampsToFloor() throws Exception {
+        assertEquals(Decibel.FLOOR, Decibel.fromMagnitude(0f), 0f);
+        assertEquals(Decibel.FLOOR, Decibel.fromMagnitude(-1f), 0f);
+        assertEquals(Decibel.FLOOR, Decibel.fromMagnitude(Float.MIN_VALUE), 0f);
+        assertEquals(Decibel.FLOOR, Decibel.fromMagnitude(Float.NaN), 0f);
+    }
+
+    @Test
+    public void fromMagnitudes_convertsInPlace() throws Exception {
+        float[] x = {1f, 0.1f, 0.01f};
+        Decibel.fromMagnitudes(x, 0, x, 0, x.length);
+        assertArrayEquals(new float[]{0f, -20f, -40f}, x, 5e-3f);
+    }
+}
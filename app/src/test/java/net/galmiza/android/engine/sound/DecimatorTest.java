@@ -0,0 +1,44 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecimatorTest {
+
+    private static float amplitude(short[] x, int from, int to, double frequency, double fs) {
+        double re = 0, im = 0;
+        for (int i = from; i < to; i++) {
+            re += x[i] * Math.cos(2 * Math.PI * frequency * i / fs);
+            im += x[i] * Math.sin(2 * Math.PI * frequency * i / fs);
+        }
+        return (float) (2 * Math.hypot(re, im) / (to - from));
+    }
+
+    @Test
+    public void process_keepsPassbandAndRejectsAliases() throws Exception {
+        int fs = 44100, factor = 8;
+        double out = (double) fs / factor;
+        Decimator decimator = new Decimator(factor);
+        short[] in = new short[fs];
+        for (int i = 0; i < in.length; i++)
+            in[i] = (short) (8000 * Math.sin(2 * Math.PI * 1000 * i / fs) + 8000 * Math.sin(2 * Math.PI * 6000 * i / fs));
+
+        // Fed in chunks that are not multiple of the factor
+        short[] y = new short[decimator.getOutputLength(in.length)];
+        int count = 0;
+        for (int i = 0; i < in.length; i += 1001)
+            count += decimator.process(in, i, Math.min(1001, in.length - i), y, count);
+        assertEquals(in.length / factor, count);
+
+        // 1 kHz is kept, 6 kHz (aliased at 6000-5512.5 Hz) is rejected
+        int settled = decimator.getTapCount() / factor;
+        assertEquals(8000, amplitude(y, settled, count, 1000, out), 80);
+        assertTrue(amplitude(y, settled, count, 6000 - out, out) < 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsFactorOne() throws Exception {
+        new Decimator(1);
+    }
+}
@@ -0,0 +1,81 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class DirectFramerTest {
+
+    @Test
+    public void next_readsFramesInPlaceAcrossWraps() throws Exception {
+        int n = 16;
+        for (int hop : new int[] {1, 5, 8, 16}) {
+            DirectFramer framer = new DirectFramer(n, hop, 7, 2);
+            BlockRing<ByteBuffer> ring = framer.getRing();
+            int sample = 0, frame = 0;
+            for (int r = 0; r < 100; r++) {
+
+                // The producer fills up to 3 blocks ahead of the consumer
+                for (int b = 0; b < 1 + r % 3; b++) {
+                    ByteBuffer block = ring.acquire();
+                    assertNotNull(block);
+                    ShortBuffer record = block.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    for (int i = 0; i < 7; i++)
+                        record.put(i, (short) sample++);
+                    ring.publish(7);
+                }
+                while (framer.update()) {
+                    int frames = framer.getFrameCount();
+                    assertTrue(frames <= framer.getMaxFrameCount());
+                    while (frames > 0) {
+                        int count = framer.getContiguousFrameCount();
+                        int offset = framer.next(count);
+                        for (int f = 0; f < count; f++, frame++)
+                            for (int i = 0; i < n; i++)
+                                assertEquals((short) (frame*hop + i), framer.getBuffer().get(offset+f*hop+i));
+                        frames -= count;
+                    }
+                    assertEquals(-1, framer.next());
+                    framer.release();
+                }
+            }
+            assertEquals((sample-n)/hop + 1, frame);
+        }
+    }
+
+    @Test
+    public void release_holdsTheBlocksOfTheNextFrame() throws Exception {
+        DirectFramer framer = new DirectFramer(16, 16, 4, 1);
+        BlockRing<ByteBuffer> ring = framer.getRing();
+        assertEquals(8, ring.getCapacity());
+        for (int b = 0; b < 8; b++) {
+            assertNotNull(ring.acquire());
+            ring.publish(4);
+        }
+        assertNull(ring.acquire());
+        for (int b = 0; b < 5; b++)
+            assertTrue(framer.update());
+        framer.release();
+        assertNull(ring.acquire());
+
+        // Releases the 4 blocks of the first frame, the fifth one starts the next frame
+        assertEquals(0, framer.next());
+        framer.release();
+        assertEquals(4, ring.getCapacity()-ring.getCount());
+    }
+
+    @Test
+    public void reset_startsANewRing() throws Exception {
+        DirectFramer framer = new DirectFramer(8, 4, 8, 1);
+        BlockRing<ByteBuffer> ring = framer.getRing();
+        ring.overrun(8);
+        framer.reset();
+        assertNotSame(ring, framer.getRing());
+        assertEquals(0, framer.getRing().getOverruns());
+        assertFalse(framer.update());
+    }
+}
@@ -0,0 +1,34 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FftPlanCacheTest {
+
+    @Test
+    public void get_returnsSamePlanForSameSize() throws Exception {
+        FftPlanCache cache = new FftPlanCache(2);
+        FftPlan plan = cache.get(1024);
+        assertSame(plan, cache.get(1024));
+        assertEquals(1024, plan.getSize());
+        assertEquals(10, plan.getLog2Size());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsedPlan() throws Exception {
+        FftPlanCache cache = new FftPlanCache(2);
+        FftPlan p32 = cache.get(32);
+        FftPlan p64 = cache.get(64);
+        cache.get(32); // 64 becomes the eldest
+        cache.get(128);
+        assertEquals(2, cache.size());
+        assertSame(p32, cache.get(32));
+        assertNotSame(p64, cache.get(64));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void get_rejectsOversizedPlan() throws Exception {
+        new FftPlanCache(1).get(1 << (FftPlan.MAX_LOG2_N + 1));
+    }
+}
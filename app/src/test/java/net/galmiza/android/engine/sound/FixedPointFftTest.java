@@ -0,0 +1,54 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FixedPointFftTest {
+
+    private static short[] noisyTones(int n) {
+        Random random = new Random(1);
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (12000 * Math.sin(2 * Math.PI * 0.0731 * i) + 4000 * Math.sin(2 * Math.PI * 0.31 * i) + 1000 * random.nextGaussian());
+        return frame;
+    }
+
+    @Test
+    public void analyze_matchesFloatPath() throws Exception {
+        int n = 8192;
+        short[] frame = noisyTones(n);
+        SpectrumAnalyzer floating = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HANNING);
+        SpectrumAnalyzer fixed = new SpectrumAnalyzer(n, Window.HANNING);
+        assertEquals(floating.getBinCount(), fixed.getBinCount());
+        float[] expected = new float[floating.getBinCount()];
+        float[] actual = new float[fixed.getBinCount()];
+        floating.analyze(frame, expected, false);
+        fixed.analyze(frame, actual, false);
+
+        // Error relative to the strongest bin stays below -70 dB
+        float peak = 0, error = 0;
+        for (int k = 0; k < expected.length; k++) {
+            peak = Math.max(peak, expected[k]);
+            error = Math.max(error, Math.abs(expected[k] - actual[k]));
+        }
+        assertTrue("peak=" + peak + ", error=" + error, error < peak * 3e-4f);
+    }
+
+    @Test
+    public void forward_scalesLikeRealFft() throws Exception {
+        int n = 256;
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (16384 * Math.cos(2 * Math.PI * 10 * i / n) + 8192);
+        FixedPointFft fft = new FixedPointFft(n, Window.RECTANGULAR);
+        float[] re = new float[n / 2 + 1], im = new float[n / 2 + 1];
+        fft.forward(frame, 0, re, im);
+        assertEquals(0.25f, re[0], 1e-3);
+        assertEquals(0.25f, (float) Math.hypot(re[10], im[10]), 1e-3);
+        assertEquals(0f, (float) Math.hypot(re[11], im[11]), 1e-3);
+        assertTrue(fft.getExponent() > 0);
+    }
+}
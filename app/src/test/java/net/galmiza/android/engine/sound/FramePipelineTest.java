@@ -0,0 +1,69 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+
+    @Test
+    public void submit_deliversInOrder() throws Exception {
+        int n = 256, frames = 64;
+        short[] stream = new short[n * frames];
+        for (int f = 0; f < frames; f++)
+            for (int i = 0; i < n; i++)
+                stream[f * n + i] = (short) (10000 * Math.sin(2 * Math.PI * (f + 1) * i / n));
+
+        final List<Integer> peaks = new ArrayList<>();
+        final List<Boolean> lasts = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(frames);
+        FramePipeline pipeline = new FramePipeline(3, 8,
+                () -> new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HANNING), false,
+                (spectrum, last) -> {
+                    int peak = 0;
+                    for (int k = 1; k < spectrum.length; k++)
+                        if (spectrum[k] > spectrum[peak]) peak = k;
+                    peaks.add(peak);
+                    lasts.add(last);
+                    done.countDown();
+                });
+
+        // Resubmit dropped frames so that every frame goes through
+        for (int f = 0; f < frames; f++)
+            while (!pipeline.submit(stream, f * n, f == frames - 1))
+                Thread.yield();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pipeline.stop();
+
+        for (int f = 0; f < frames; f++) {
+            assertEquals(f + 1, (int) peaks.get(f));
+            assertEquals(f == frames - 1, lasts.get(f));
+        }
+    }
+
+    @Test
+    public void submit_dropsWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(1, 2,
+                () -> new SpectrumAnalyzer(new JavaSoundEngine(), 64, Window.RECTANGULAR), true,
+                (spectrum, last) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        short[] frame = new short[64];
+        assertTrue(pipeline.submit(frame, 0, false));
+        assertTrue(pipeline.submit(frame, 0, false));
+        assertFalse(pipeline.submit(frame, 0, false));
+        assertEquals(1, pipeline.getDroppedFrames());
+        release.countDown();
+        pipeline.stop();
+    }
+}
@@ -0,0 +1,38 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GoertzelBankTest {
+
+    @Test
+    public void process_measuresMonitoredTone() throws Exception {
+        int fs = 44100, n = 4410;
+        short[] samples = new short[n];
+        for (int i = 0; i < n; i++)
+            samples[i] = (short) (16384 * Math.sin(2 * Math.PI * 1000 * i / fs));
+
+        GoertzelBank bank = new GoertzelBank(fs, new float[]{1000, 3000}, n);
+        assertEquals(1, bank.process(samples, 0, n));
+        assertEquals(0.25f, bank.getMagnitudes()[0], 1e-3f);
+        assertEquals(0f, bank.getMagnitudes()[1], 1e-3f);
+    }
+
+    @Test
+    public void process_splitsBlocksAcrossChunks() throws Exception {
+        int fs = 8000, n = 256;
+        short[] samples = new short[3 * n];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) (10000 * Math.cos(2 * Math.PI * 440 * i / fs) + 3000 * Math.sin(i));
+
+        GoertzelBank whole = new GoertzelBank(fs, new float[]{440, 1200}, n);
+        GoertzelBank chunked = new GoertzelBank(fs, new float[]{440, 1200}, n);
+        assertEquals(3, whole.process(samples, 0, samples.length));
+        int blocks = 0;
+        for (int i = 0; i < samples.length; i += 100)
+            blocks += chunked.process(samples, i, Math.min(100, samples.length - i));
+        assertEquals(3, blocks);
+        assertArrayEquals(whole.getMagnitudes(), chunked.getMagnitudes(), 1e-6f);
+    }
+}
@@ -0,0 +1,89 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JavaSoundEngineTest {
+    private static final float EPSILON = 1e-4f;
+
+    private final JavaSoundEngine engine = new JavaSoundEngine();
+
+    @Test
+    public void fft_matchesDirectDft() throws Exception {
+        for (int log2_n = 0; log2_n <= 10; log2_n++) {
+            int n = 1 << log2_n;
+            float[] re = new float[n], im = new float[n];
+            randomize(re, im, log2_n);
+
+            // Reference: direct dft normalized by 1/n
+            float[] dre = new float[n], dim = new float[n];
+            for (int k = 0; k < n; k++) {
+                double sr = 0, si = 0;
+                for (int t = 0; t < n; t++) {
+                    double a = -2 * Math.PI * k * t / n;
+                    sr += re[t] * Math.cos(a) - im[t] * Math.sin(a);
+                    si += re[t] * Math.sin(a) + im[t] * Math.cos(a);
+                }
+                dre[k] = (float) (sr / n);
+                dim[k] = (float) (si / n);
+            }
+
+            engine.fft(re, im, log2_n, 0);
+            assertArrayEquals("re, n=" + n, dre, re, EPSILON);
+            assertArrayEquals("im, n=" + n, dim, im, EPSILON);
+        }
+    }
+
+    @Test
+    public void fft_inverseRestoresInput() throws Exception {
+        int log2_n = 13;
+        int n = 1 << log2_n;
+        float[] re = new float[n], im = new float[n];
+        randomize(re, im, 42);
+        float[] re0 = re.clone(), im0 = im.clone();
+
+        engine.fft(re, im, log2_n, 0);
+        engine.fft(re, im, log2_n, 1);
+        assertArrayEquals(re0, re, EPSILON);
+        assertArrayEquals(im0, im, EPSILON);
+    }
+
+    @Test
+    public void toPolar_givesMagnitudeOfSine() throws Exception {
+        int log2_n = 10;
+        int n = 1 << log2_n;
+        short[] samples = new short[n];
+        for (int i = 0; i < n; i++)
+            samples[i] = (short) (16384 * Math.cos(2 * Math.PI * 64 * i / n));
+        float[] re = new float[n], im = new float[n];
+
+        engine.shortToFloat(samples, re, n);
+        engine.fft(re, im, log2_n, 0);
+        engine.toPolar(re, im, n);
+        assertEquals(0.25f, re[64], EPSILON);
+        assertEquals(0.25f, re[n - 64], EPSILON);
+        assertEquals(0f, re[63], EPSILON);
+    }
+
+    @Test
+    public void windows_areSymmetric() throws Exception {
+        int n = 255;
+        float[] x = new float[n];
+        java.util.Arrays.fill(x, 1f);
+        engine.windowBlackmanHarris(x, n);
+        for (int i = 0; i < n / 2; i++)
+            assertEquals(x[i], x[n - 1 - i], EPSILON);
+        assertEquals(1f, x[n / 2], 1e-3f);
+    }
+
+    private static void randomize(float[] re, float[] im, long seed) {
+        Random r = new Random(seed);
+        for (int i = 0; i < re.length; i++) {
+            re[i] = r.nextFloat() * 2 - 1;
+            im[i] = r.nextFloat() * 2 - 1;
+        }
+    }
+}
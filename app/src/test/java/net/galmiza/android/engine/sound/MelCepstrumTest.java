@@ -0,0 +1,60 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MelCepstrumTest {
+
+    @Test
+    public void process_peaksAtToneFilter() throws Exception {
+        int fs = 44100, n = 2048;
+        MelCepstrum mel = new MelCepstrum(fs, n, 40, 13, 20, 8000);
+        float f = 1000;
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (16384 * Math.sin(2 * Math.PI * f * i / fs));
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HANNING);
+        float[] magnitudes = new float[analyzer.getBinCount()];
+        analyzer.analyze(frame, magnitudes, false);
+        mel.process(magnitudes, 0);
+
+        // Filter m is centered on edge m+1 of the mel scale
+        float[] logMel = mel.getLogMel();
+        int peak = 0;
+        for (int m = 1; m < logMel.length; m++)
+            if (logMel[m] > logMel[peak]) peak = m;
+        float step = (MelCepstrum.toMel(8000) - MelCepstrum.toMel(20)) / 41;
+        float center = MelCepstrum.toFrequency(MelCepstrum.toMel(20) + (peak + 1) * step);
+        assertEquals(f, center, MelCepstrum.toFrequency(MelCepstrum.toMel(f) + step) - f);
+    }
+
+    @Test
+    public void process_appliesOrthonormalDct() throws Exception {
+        MelCepstrum mel = new MelCepstrum(16000, 512, 26, 13, 0, 8000);
+        float[] magnitudes = new float[257];
+        for (int j = 0; j < magnitudes.length; j++)
+            magnitudes[j] = 0.01f * (1 + j % 7);
+        final float[][] published = new float[2][];
+        mel.setOnFeaturesListener((logMel, mfcc) -> {
+            published[0] = logMel;
+            published[1] = mfcc;
+        });
+        mel.process(magnitudes, 0);
+        assertSame(mel.getLogMel(), published[0]);
+        assertSame(mel.getMfcc(), published[1]);
+
+        float[] logMel = mel.getLogMel(), mfcc = mel.getMfcc();
+        for (int k = 0; k < mfcc.length; k++) {
+            double expected = 0;
+            for (int m = 0; m < logMel.length; m++)
+                expected += Math.sqrt((k == 0 ? 1.0 : 2.0) / logMel.length) * Math.cos(Math.PI * k * (m + 0.5) / logMel.length) * logMel[m];
+            assertEquals(expected, mfcc[k], 1e-3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsBandAboveNyquist() throws Exception {
+        new MelCepstrum(16000, 512, 26, 13, 0, 10000);
+    }
+}
@@ -0,0 +1,58 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelFftTest {
+
+    private static void assertMatchesPlan(int n, ForkJoinPool pool, int direction) {
+        Random random = new Random(n);
+        float[] re = new float[n], im = new float[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = (float) random.nextGaussian();
+            im[i] = (float) random.nextGaussian();
+        }
+        float[] expectedRe = re.clone(), expectedIm = im.clone();
+        new FftPlan(n).transform(expectedRe, expectedIm, direction);
+
+        ParallelFft fft = new ParallelFft(n, pool);
+        for (int run = 0; run < 2; run++) { // tasks are reused
+            float[] actualRe = re.clone(), actualIm = im.clone();
+            fft.transform(actualRe, actualIm, direction);
+            float tolerance = direction == 0 ? 1e-5f : 1e-2f;
+            for (int k = 0; k < n; k++) {
+                assertEquals("re[" + k + "]", expectedRe[k], actualRe[k], tolerance);
+                assertEquals("im[" + k + "]", expectedIm[k], actualIm[k], tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void transform_matchesSingleThread() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertMatchesPlan(1 << 13, pool, 0);
+            assertMatchesPlan(1 << 14, pool, 0);
+            assertMatchesPlan(1 << 16, pool, 0);
+            assertMatchesPlan(1 << 15, pool, 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void fft_largeSizesGoThroughEngine() throws Exception {
+        int n = 1 << 14;
+        float[] re = new float[n], im = new float[n];
+        for (int i = 0; i < n; i++)
+            re[i] = (float) Math.cos(2 * Math.PI * 1234 * i / n);
+        new JavaSoundEngine().fft(re, im, 14, 0);
+        assertEquals(0.5f, re[1234], 1e-5f);
+        assertEquals(0.5f, re[n - 1234], 1e-5f);
+        assertEquals(0f, re[1235], 1e-5f);
+    }
+}
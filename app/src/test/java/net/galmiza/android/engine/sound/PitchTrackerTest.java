@@ -0,0 +1,39 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PitchTrackerTest {
+
+    @Test
+    public void process_tracksHarmonicTone() throws Exception {
+        int fs = 44100;
+        int n = PitchTracker.getFrameLength(fs, 50);
+        assertEquals(2048, n);
+        PitchTracker tracker = new PitchTracker(new JavaSoundEngine(), fs, n, n / 4, 50, 2000, PitchTracker.DEFAULT_THRESHOLD);
+
+        // Fundamental weaker than its harmonics
+        short[] samples = new short[fs / 2];
+        double f0 = 123.4;
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) (3000 * Math.sin(2 * Math.PI * f0 * i / fs) + 6000 * Math.sin(4 * Math.PI * f0 * i / fs) + 5000 * Math.sin(6 * Math.PI * f0 * i / fs + 1));
+        int estimates = 0;
+        for (int i = 0; i < samples.length; i += 1000)
+            estimates += tracker.process(samples, i, Math.min(1000, samples.length - i));
+        assertEquals((samples.length - n) / (n / 4) + 1, estimates);
+        assertEquals(f0, tracker.getPitch(), 0.2);
+        assertTrue(tracker.getConfidence() > 0.9f);
+    }
+
+    @Test
+    public void process_reportsSilenceAsUnvoiced() throws Exception {
+        PitchTracker tracker = new PitchTracker(new JavaSoundEngine(), 8000, 1024, 256, 50, 1000, PitchTracker.DEFAULT_THRESHOLD);
+        java.util.Random random = new java.util.Random(3);
+        short[] noise = new short[4096];
+        for (int i = 0; i < noise.length; i++)
+            noise[i] = (short) (3000 * random.nextGaussian());
+        assertTrue(tracker.process(noise, 0, noise.length) > 0);
+        assertEquals(0f, tracker.getPitch(), 0f);
+    }
+}
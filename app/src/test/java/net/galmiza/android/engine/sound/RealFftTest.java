@@ -0,0 +1,38 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RealFftTest {
+    private static final float EPSILON = 1e-5f;
+
+    private final JavaSoundEngine engine = new JavaSoundEngine();
+
+    @Test
+    public void forward_matchesComplexFft() throws Exception {
+        for (int log2_n = 1; log2_n <= 14; log2_n++) {
+            int n = 1 << log2_n;
+            Random r = new Random(log2_n);
+            float[] re = new float[n], im = new float[n];
+            for (int i = 0; i < n; i++)
+                re[i] = r.nextFloat() * 2 - 1;
+            float[] cre = re.clone(), cim = new float[n];
+
+            engine.fft(cre, cim, log2_n, 0);
+            RealFft realFft = new RealFft(n);
+            realFft.forward(engine, re, im);
+            for (int k = 0; k < realFft.getBinCount(); k++) {
+                assertEquals("re[" + k + "], n=" + n, cre[k], re[k], EPSILON);
+                assertEquals("im[" + k + "], n=" + n, cim[k], im[k], EPSILON);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPowerOfTwo() throws Exception {
+        new RealFft(1000);
+    }
+}
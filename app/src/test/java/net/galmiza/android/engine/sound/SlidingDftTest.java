@@ -0,0 +1,53 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SlidingDftTest {
+
+    @Test
+    public void process_matchesFftOfLastFrame() throws Exception {
+        int n = 256, hop = 16;
+        short[] samples = new short[20 * n + 5];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) (9000 * Math.sin(i * 0.21) + 4000 * Math.cos(i * 1.7));
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.RECTANGULAR);
+        for (boolean stable : new boolean[]{true, false}) {
+            SlidingDft sdft = new SlidingDft(n, hop, Window.RECTANGULAR, stable);
+            float[] out = new float[sdft.getFrameCount(samples.length) * sdft.getBinCount()];
+            int frames = sdft.process(samples, 0, samples.length, out, false);
+            assertEquals(samples.length / hop, frames);
+
+            // Last spectrum covers the n samples preceding the last hop boundary
+            int end = frames * hop;
+            float[] expected = new float[analyzer.getBinCount()];
+            analyzer.analyze(samples, end - n, expected, false);
+            for (int k = 0; k < expected.length; k++)
+                assertEquals("k=" + k + ", stable=" + stable, expected[k], out[(frames - 1) * sdft.getBinCount() + k], 2e-3f);
+        }
+    }
+
+    @Test
+    public void process_appliesHanningInFrequencyDomain() throws Exception {
+        int n = 128;
+        short[] samples = new short[n];
+        for (int i = 0; i < n; i++)
+            samples[i] = (short) (12000 * Math.sin(i * 0.5) - 3000);
+
+        // Reference: periodic hanning applied in time domain
+        float[] re = new float[n], im = new float[n];
+        for (int i = 0; i < n; i++)
+            re[i] = samples[i] / 32768f * (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / n));
+        JavaSoundEngine engine = new JavaSoundEngine();
+        engine.fft(re, im, 7, 0);
+        engine.toPolar(re, im, n);
+
+        SlidingDft sdft = new SlidingDft(n, n, Window.HANNING, true);
+        float[] out = new float[sdft.getBinCount()];
+        assertEquals(1, sdft.process(samples, 0, n, out, false));
+        for (int k = 0; k <= n / 2; k++)
+            assertEquals("k=" + k, re[k], out[k], 1e-5f);
+    }
+}
@@ -0,0 +1,39 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpectralDescriptorsTest {
+
+    @Test
+    public void process_twoTones() throws Exception {
+        SpectralDescriptors descriptors = new SpectralDescriptors(4, 0, 100, 8);
+        descriptors.process(new float[] {9, 0, 1, 0, 1}, 1);
+        int i = descriptors.getNewest();
+        assertEquals(200, descriptors.getCentroids()[i], 1e-3);
+        assertEquals(100, descriptors.getSpreads()[i], 1e-3);
+        assertEquals(300, descriptors.getRolloffs()[i], 1e-3);
+        assertEquals(0, descriptors.getFlatnesses()[i], 1e-6);
+        assertEquals(0, descriptors.getFluxes()[i], 0);
+
+        // A flat spectrum is perfectly flat
+        descriptors.process(new float[] {1, 1, 1, 1}, 0);
+        assertEquals(1, descriptors.getFlatnesses()[descriptors.getNewest()], 1e-3);
+    }
+
+    @Test
+    public void process_fluxAndHistory() throws Exception {
+        SpectralDescriptors descriptors = new SpectralDescriptors(4, 50, 100, 2);
+        descriptors.process(new float[] {0, 1, 0, 1}, 0);
+        descriptors.process(new float[] {0, 2, 0, 0}, 0);
+        assertEquals(1, descriptors.getFluxes()[descriptors.getNewest()], 1e-6);
+        assertEquals(150, descriptors.getCentroids()[descriptors.getNewest()], 1e-3);
+        descriptors.process(new float[] {0, 2, 0, 3}, 0);
+        assertEquals(3, descriptors.getFluxes()[descriptors.getIndex(0)], 1e-6);
+        assertEquals(1, descriptors.getFluxes()[descriptors.getIndex(1)], 1e-6);
+        assertEquals(2, descriptors.getCount());
+        descriptors.reset();
+        assertEquals(0, descriptors.getCount());
+    }
+}
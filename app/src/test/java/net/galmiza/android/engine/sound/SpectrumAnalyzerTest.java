@@ -0,0 +1,86 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class SpectrumAnalyzerTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void analyze_findsToneMagnitude() throws Exception {
+        int n = 1024;
+        short[] frame = new short[n];
+        for (int i = 0; i < n; i++)
+            frame[i] = (short) (16384 * Math.sin(2 * Math.PI * 100 * i / n));
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.RECTANGULAR);
+        float[] out = new float[analyzer.getBinCount()];
+        analyzer.analyze(frame, out, false);
+        assertEquals(n / 2 + 1, out.length);
+        assertEquals(0.25f, out[100], EPSILON);
+        assertEquals(0f, out[99], EPSILON);
+
+        analyzer.analyze(frame, out, true);
+        assertEquals(20 * Math.log10(0.25), out[100], 5e-3);
+    }
+
+    @Test
+    public void analyze_readsFrameAtOffset() throws Exception {
+        int n = 64;
+        short[] stream = new short[3 * n];
+        for (int i = 0; i < stream.length; i++)
+            stream[i] = (short) (i * 31);
+        short[] frame = new short[n];
+        System.arraycopy(stream, n, frame, 0, n);
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HAMMING);
+        float[] expected = new float[analyzer.getBinCount()], out = new float[analyzer.getBinCount()];
+        analyzer.analyze(frame, expected, false);
+        analyzer.analyze(stream, n, out, false);
+        assertArrayEquals(expected, out, 0f);
+    }
+
+    @Test
+    public void analyzeBatch_matchesFrameByFrameAnalysis() throws Exception {
+        int n = 128, hop = n / 2;
+        short[] stream = new short[n / 2 + 4 * n];
+        for (int i = 0; i < stream.length; i++)
+            stream[i] = (short) (8000 * Math.sin(i * 0.3) + i);
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.HANNING);
+        int bins = analyzer.getBinCount();
+        int frames = analyzer.getFrameCount(stream.length, hop);
+        assertEquals(8, frames);
+
+        float[] batch = new float[frames * bins];
+        assertEquals(frames, analyzer.analyzeBatch(stream, 0, stream.length, hop, batch, false));
+        float[] single = new float[bins];
+        for (int f = 0; f < frames; f++) {
+            analyzer.analyze(stream, f * hop, single, false);
+            for (int k = 0; k < bins; k++)
+                assertEquals(single[k], batch[f * bins + k], 0f);
+        }
+    }
+
+    @Test
+    public void analyzeBatch_readsDirectBuffer() throws Exception {
+        int n = 256, hop = n / 2;
+        short[] stream = new short[5 * n];
+        for (int i = 0; i < stream.length; i++)
+            stream[i] = (short) (12000 * Math.cos(i * 0.05));
+        ShortBuffer direct = ByteBuffer.allocateDirect(2 * stream.length).order(ByteOrder.nativeOrder()).asShortBuffer();
+        direct.put(stream);
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new JavaSoundEngine(), n, Window.BLACKMAN);
+        int size = analyzer.getFrameCount(stream.length, hop) * analyzer.getBinCount();
+        float[] expected = new float[size], out = new float[size];
+        analyzer.analyzeBatch(stream, 0, stream.length, hop, expected, false);
+        analyzer.analyzeBatch(direct, 0, stream.length, hop, out, false);
+        assertArrayEquals(expected, out, 0f);
+    }
+}
@@ -0,0 +1,61 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpectrumAveragerTest {
+
+    @Test
+    public void add_linearAveragesPowerPerBlock() throws Exception {
+        SpectrumAverager averager = new SpectrumAverager(2, SpectrumAverager.Mode.LINEAR, 2);
+        float[] frames = {1, 0, 3, 4};
+        assertFalse(averager.add(frames, 0));
+        assertTrue(averager.add(frames, 2));
+        float[] out = new float[2];
+        averager.getMagnitudes(out, 0);
+        assertEquals(Math.sqrt(5), out[0], 1e-6);
+        assertEquals(Math.sqrt(8), out[1], 1e-6);
+
+        // Next block starts from scratch
+        assertFalse(averager.add(frames, 2));
+        assertTrue(averager.add(frames, 2));
+        averager.getMagnitudes(out, 0);
+        assertEquals(3, out[0], 1e-6);
+        assertEquals(4, out[1], 1e-6);
+    }
+
+    @Test
+    public void add_exponentialConvergesToPower() throws Exception {
+        SpectrumAverager averager = new SpectrumAverager(1, SpectrumAverager.Mode.EXPONENTIAL, 3);
+        float[] out = new float[1];
+        assertTrue(averager.add(new float[] {2}, 0));
+        averager.getMagnitudes(out, 0);
+        assertEquals(2, out[0], 1e-6);
+        for (int i = 0; i < 100; i++)
+            averager.add(new float[] {1}, 0);
+        averager.getMagnitudes(out, 0);
+        assertEquals(1, out[0], 1e-4);
+    }
+
+    @Test
+    public void add_peakHoldKeepsMaximum() throws Exception {
+        SpectrumAverager averager = new SpectrumAverager(2, SpectrumAverager.Mode.PEAK_HOLD, 1);
+        averager.add(new float[] {0.5f, 0.1f}, 0);
+        averager.add(new float[] {0.2f, 0.3f}, 0);
+        float[] out = new float[2];
+        averager.getDecibels(out, 0);
+        assertEquals(Decibel.fromMagnitude(0.5f), out[0], 1e-3);
+        assertEquals(Decibel.fromMagnitude(0.3f), out[1], 1e-3);
+        averager.reset();
+        averager.add(new float[] {0.2f, 0.1f}, 0);
+        averager.getMagnitudes(out, 0);
+        assertEquals(0.2f, out[0], 1e-6);
+    }
+
+    @Test
+    public void fromName_defaultsToNone() throws Exception {
+        assertEquals(SpectrumAverager.Mode.PEAK_HOLD, SpectrumAverager.Mode.fromName("Peak hold"));
+        assertEquals(SpectrumAverager.Mode.NONE, SpectrumAverager.Mode.fromName("?"));
+    }
+}
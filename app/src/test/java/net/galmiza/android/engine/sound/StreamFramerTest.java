@@ -0,0 +1,96 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.*;
+
+public class StreamFramerTest {
+
+    @Test
+    public void next_readsOverlappingFramesAcrossWraps() throws Exception {
+        int n = 16;
+        for (int hop : new int[] {1, 5, 8, 16}) {
+            StreamFramer framer = new StreamFramer(n, hop, 7);
+            short[] record = new short[7];
+            int sample = 0, frame = 0;
+            for (int r = 0; r < 50; r++) {
+                for (int i = 0; i < record.length; i++)
+                    record[i] = (short) sample++;
+                framer.write(record, 0, record.length);
+                int frames = framer.getFrameCount();
+                assertTrue(frames <= framer.getMaxFrameCount(record.length));
+                for (int f = 0; f < frames; f++) {
+                    int offset = framer.next();
+                    for (int i = 0; i < n; i++)
+                        assertEquals(frame*hop + i, framer.getBuffer()[offset+i]);
+                    frame++;
+                }
+                assertEquals(-1, framer.next());
+            }
+            assertEquals((sample-n)/hop + 1, frame);
+        }
+    }
+
+    @Test
+    public void nextFrames_batchesContiguousFramesAcrossWraps() throws Exception {
+        int n = 16;
+        for (int hop : new int[] {1, 5, 8, 16}) {
+            StreamFramer framer = new StreamFramer(n, hop, 23);
+            short[] record = new short[23];
+            int sample = 0, frame = 0;
+            for (int r = 0; r < 50; r++) {
+                for (int i = 0; i < record.length; i++)
+                    record[i] = (short) sample++;
+                framer.write(record, 0, record.length);
+                int frames = framer.getFrameCount();
+                while (frames > 0) {
+                    int count = framer.getContiguousFrameCount();
+                    assertTrue(count >= 1 && count <= frames);
+                    assertEquals(-1, framer.next(count+1));
+                    int offset = framer.next(count);
+                    for (int f = 0; f < count; f++, frame++)
+                        for (int i = 0; i < n; i++)
+                            assertEquals((short) (frame*hop + i), framer.getBuffer()[offset+f*hop+i]);
+                    frames -= count;
+                    assertEquals(frames, framer.getFrameCount());
+                }
+                assertEquals(0, framer.getContiguousFrameCount());
+            }
+            assertEquals((sample-n)/hop + 1, frame);
+        }
+    }
+
+    @Test
+    public void write_directBufferAndSkipToLatest() throws Exception {
+        StreamFramer framer = new StreamFramer(8, 4, 5);
+        ShortBuffer record = ShortBuffer.allocate(5);
+        assertEquals(-1, framer.skipToLatest());
+        for (int r = 0; r < 20; r++) {
+            for (int i = 0; i < 5; i++)
+                record.put(i, (short) (r*5 + i));
+            framer.write(record, 0, 5);
+            int offset = framer.skipToLatest();
+            if (r == 0) continue;
+            assertEquals(0, framer.getFrameCount());
+            for (int i = 0; i < 8; i++)
+                assertEquals(r*5 + 5 - 8 + i, framer.getBuffer()[offset+i]);
+        }
+    }
+
+    @Test
+    public void getHop_clampsOverlap() throws Exception {
+        assertEquals(512, StreamFramer.getHop(1024, 0.5f));
+        assertEquals(1024, StreamFramer.getHop(1024, -1));
+        assertEquals(51, StreamFramer.getHop(1024, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void write_rejectsUnreadOverflow() throws Exception {
+        StreamFramer framer = new StreamFramer(4, 2, 4);
+        framer.write(new short[4], 0, 4);
+        framer.write(new short[4], 0, 4);
+        framer.write(new short[4], 0, 4);
+    }
+}
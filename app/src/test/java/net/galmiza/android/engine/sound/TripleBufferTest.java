@@ -0,0 +1,47 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest {
+
+    @Test
+    public void update_picksLatestPublishedFrame() throws Exception {
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[][] {new int[1], new int[1], new int[1]});
+        assertFalse(buffer.update());
+        for (int i = 1; i <= 3; i++) {
+            buffer.getBack()[0] = i;
+            buffer.publish();
+        }
+        assertTrue(buffer.update());
+        assertEquals(3, buffer.getFront()[0]);
+        assertFalse(buffer.update());
+        assertEquals(3, buffer.getFront()[0]);
+    }
+
+    @Test
+    public void update_neverSeesTornFrames() throws Exception {
+        final TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[][] {new int[64], new int[64], new int[64]});
+        final int count = 200000;
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+                int[] back = buffer.getBack();
+                for (int j = 0; j < back.length; j++)
+                    back[j] = i;
+                buffer.publish();
+            }
+        });
+        producer.start();
+        int last = 0;
+        while (last < count) {
+            if (!buffer.update()) continue;
+            int[] front = buffer.getFront();
+            for (int j = 1; j < front.length; j++)
+                assertEquals(front[0], front[j]);
+            assertTrue(front[0] > last);
+            last = front[0];
+        }
+        producer.join();
+    }
+}
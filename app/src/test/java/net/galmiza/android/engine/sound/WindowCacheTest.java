@@ -0,0 +1,54 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WindowCacheTest {
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    public void get_reusesCoefficients() throws Exception {
+        WindowCache cache = new WindowCache(2);
+        float[] c = cache.get(Window.HAMMING, 512);
+        assertSame(c, cache.get(Window.HAMMING, 512));
+        assertNotSame(c, cache.get(Window.HANNING, 512));
+        assertEquals(0.08f, c[0], EPSILON);
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() throws Exception {
+        WindowCache cache = new WindowCache(2);
+        float[] hamming = cache.get(Window.HAMMING, 512);
+        float[] small = cache.get(Window.HAMMING, 256);
+        assertSame(hamming, cache.get(Window.HAMMING, 512));
+        cache.get(Window.HANNING, 512); // evicts the 256 points table
+        assertSame(hamming, cache.get(Window.HAMMING, 512));
+        assertNotSame(small, cache.get(Window.HAMMING, 256));
+        assertEquals(256, cache.get(Window.HAMMING, 256).length);
+    }
+
+    @Test
+    public void apply_convertsAndWindowsInOnePass() throws Exception {
+        int n = 256;
+        short[] samples = new short[n];
+        for (int i = 0; i < n; i++)
+            samples[i] = (short) (i * 97 - 12000);
+        float[] expected = new float[n];
+        JavaSoundEngine engine = new JavaSoundEngine();
+        engine.shortToFloat(samples, expected, n);
+        for (int i = 0; i < n; i++)
+            expected[i] *= 0.35875 - 0.48829 * Math.cos(2 * Math.PI * i / (n - 1))
+                    + 0.14128 * Math.cos(4 * Math.PI * i / (n - 1)) - 0.01168 * Math.cos(6 * Math.PI * i / (n - 1));
+
+        float[] out = new float[n];
+        WindowCache.apply(samples, out, new WindowCache(1).get(Window.BLACKMAN_HARRIS, n), n);
+        assertArrayEquals(expected, out, EPSILON);
+    }
+
+    @Test
+    public void fromName_matchesPreferenceValues() throws Exception {
+        assertEquals(Window.BLACKMAN_NUTTALL, Window.fromName("Blackman-Nuttall"));
+        assertEquals(Window.RECTANGULAR, Window.fromName("Unknown"));
+    }
+}
@@ -0,0 +1,39 @@
+package net.galmiza.android.engine.sound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZoomFftTest {
+
+    @Test
+    public void process_resolvesToneWithinBand() throws Exception {
+        int fs = 44100, n = 256;
+        ZoomFft zoom = new ZoomFft(new JavaSoundEngine(), fs, 950, 1050, n, Window.HANNING);
+        assertTrue(zoom.getMinFrequency() >= 950);
+        assertTrue(zoom.getMaxFrequency() <= 1050);
+        float resolution = (zoom.getMaxFrequency() - zoom.getMinFrequency()) / (zoom.getBinCount() - 1);
+        assertTrue("resolution=" + resolution, resolution < 1f);
+
+        // Tone in the band, strong interferer out of it
+        short[] samples = new short[3 * fs];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = (short) (8000 * Math.sin(2 * Math.PI * 1012.3 * i / fs) + 16000 * Math.sin(2 * Math.PI * 1300 * i / fs));
+
+        float[] out = new float[zoom.getFrameCount(samples.length) * zoom.getBinCount()];
+        int frames = zoom.process(samples, 0, samples.length, out, false);
+        assertTrue(frames > 2);
+
+        int last = (frames - 1) * zoom.getBinCount(), peak = 0;
+        for (int b = 1; b < zoom.getBinCount(); b++)
+            if (out[last + b] > out[last + peak]) peak = b;
+        float frequency = zoom.getMinFrequency() + peak * resolution;
+        assertEquals(1012.3f, frequency, resolution);
+
+        // Leakage of the interferer far from the tone stays low
+        float floor = 0;
+        for (int b = 0; b < 10; b++)
+            floor = Math.max(floor, out[last + b]);
+        assertTrue("floor=" + floor + ", peak=" + out[last + peak], floor < out[last + peak] / 100);
+    }
+}
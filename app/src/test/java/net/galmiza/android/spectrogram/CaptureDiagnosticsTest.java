@@ -0,0 +1,91 @@
+package net.galmiza.android.spectrogram;
+
+import net.galmiza.android.engine.sound.BlockRing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CaptureDiagnosticsTest {
+
+    @Test
+    public void onRead_countsShortReadsAndErrors() throws Exception {
+        CaptureDiagnostics diagnostics = new CaptureDiagnostics(1000);
+        diagnostics.onRead(100, 100);
+        diagnostics.onRead(100, 60);
+        diagnostics.onRead(40, -3);
+        diagnostics.onDiscard(60);
+        assertEquals(2, diagnostics.getReads());
+        assertEquals(160, diagnostics.getSamples());
+        assertEquals(1, diagnostics.getShortReads());
+        assertEquals(1, diagnostics.getErrors());
+        assertEquals(-3, diagnostics.getLastError());
+        assertEquals(60, diagnostics.getDroppedSamples());
+    }
+
+    @Test
+    public void onTimestamp_infersDriverOverflows() throws Exception {
+        CaptureDiagnostics diagnostics = new CaptureDiagnostics(1000);
+        BlockRing<short[]> ring = new BlockRing<>(new short[1][100]);
+        diagnostics.start(ring);
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(5100); // driver started at 5000
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(5800); // 600 samples waiting
+        assertEquals(1, diagnostics.getLateRecords());
+        assertEquals(0, diagnostics.getGapSamples());
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(6550); // 1250 samples waiting, 250 were overwritten
+        assertEquals(250, diagnostics.getGapSamples());
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(6100); // 450 samples waiting
+        assertEquals(250, diagnostics.getGapSamples());
+        assertEquals(1, diagnostics.getLateRecords());
+
+        ring.overrun(100);
+        assertEquals(1, diagnostics.getOverruns());
+        assertEquals(350, diagnostics.getDroppedSamples());
+    }
+
+    @Test
+    public void start_keepsRingCountersAcrossRestarts() throws Exception {
+        CaptureDiagnostics diagnostics = new CaptureDiagnostics(1000);
+        BlockRing<short[]> first = new BlockRing<>(new short[1][100]);
+        diagnostics.start(first);
+        first.overrun(100);
+        first.overrun(100);
+        diagnostics.onDiscard(30);
+
+        // Pause and resume with a new ring
+        BlockRing<short[]> second = new BlockRing<>(new short[1][100]);
+        diagnostics.start(second);
+        assertEquals(2, diagnostics.getOverruns());
+        assertEquals(230, diagnostics.getDroppedSamples());
+        second.overrun(50);
+        assertEquals(3, diagnostics.getOverruns());
+        assertEquals(280, diagnostics.getDroppedSamples());
+    }
+
+    @Test
+    public void onTimestamp_restartKeepsDetectingOverflows() throws Exception {
+        CaptureDiagnostics diagnostics = new CaptureDiagnostics(1000);
+        diagnostics.start(new BlockRing<>(new short[1][100]));
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(100);
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(1600); // 1400 samples waiting, 400 were overwritten
+        assertEquals(400, diagnostics.getGapSamples());
+
+        // Pause and resume, the driver position goes on from elsewhere
+        diagnostics.start(new BlockRing<>(new short[1][100]));
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(9000);
+        assertEquals(400, diagnostics.getGapSamples());
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(9700); // 600 samples waiting
+        assertEquals(1, diagnostics.getLateRecords());
+        diagnostics.onRead(100, 100);
+        diagnostics.onTimestamp(10300); // 1100 samples waiting, 100 were overwritten
+        assertEquals(500, diagnostics.getGapSamples());
+    }
+}